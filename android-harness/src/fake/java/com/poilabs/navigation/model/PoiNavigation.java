@@ -0,0 +1,232 @@
+package com.poilabs.navigation.model;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.poilabs.navigation.view.fragments.MapFragment;
+import com.poilabs.poilabspositioning.model.PLPStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fake of the Poilabs SDK entry point with the API the templates use.
+ *
+ * getInstance takes setupDelayMs on the calling thread, like the SDK loading
+ * its configuration. bind posts onReady and onStoresReady to the main thread
+ * after mapDelayMs and storesDelayMs, and clearResources drops the callbacks
+ * still pending. Every call is counted or recorded for tests to check; reset
+ * puts everything back between tests.
+ */
+public class PoiNavigation {
+
+    public interface OnNavigationReady {
+        void onReady(MapFragment mapFragment);
+
+        void onStoresReady();
+
+        void onError(Throwable throwable);
+
+        void onStatusChanged(PLPStatus status);
+    }
+
+    private static final Object LOCK = new Object();
+
+    // Guarded by LOCK, getInstance runs on the setup thread
+    private static PoiNavigation instance;
+    private static long setupDelayMs = 0;
+    private static long mapDelayMs = 0;
+    private static long storesDelayMs = 0;
+    private static RuntimeException bindError;
+    private static int instances = 0;
+    private static int binds = 0;
+    private static int clears = 0;
+    private static int generation = 0;
+    private static OnNavigationReady callback;
+    private static final List<List<String>> shownPoints = new ArrayList<List<String>>();
+    private static final List<String> navigatedStores = new ArrayList<String>();
+
+    public static PoiNavigation getInstance(Context context, String language, PoiSdkConfig config) {
+        long delay;
+        synchronized (LOCK) {
+            delay = setupDelayMs;
+        }
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (LOCK) {
+            instances++;
+            instance = new PoiNavigation(language, config);
+            return instance;
+        }
+    }
+
+    public static PoiNavigation getInstance() {
+        synchronized (LOCK) {
+            if (instance == null) {
+                instance = new PoiNavigation(null, null);
+            }
+            return instance;
+        }
+    }
+
+    private final String language;
+    private final PoiSdkConfig config;
+
+    private PoiNavigation(String language, PoiSdkConfig config) {
+        this.language = language;
+        this.config = config;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public PoiSdkConfig getConfig() {
+        return config;
+    }
+
+    public void bind(final OnNavigationReady ready) {
+        final int bindGeneration;
+        long mapDelay;
+        long storesDelay;
+        synchronized (LOCK) {
+            binds++;
+            if (bindError != null) {
+                throw bindError;
+            }
+            callback = ready;
+            bindGeneration = ++generation;
+            mapDelay = mapDelayMs;
+            storesDelay = storesDelayMs;
+        }
+
+        Handler handler = new Handler(Looper.getMainLooper());
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (isCurrent(bindGeneration)) {
+                    ready.onReady(new MapFragment());
+                }
+            }
+        }, mapDelay);
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (isCurrent(bindGeneration)) {
+                    ready.onStoresReady();
+                }
+            }
+        }, storesDelay);
+    }
+
+    public void showPointsOnMap(List<String> storeIds) {
+        synchronized (LOCK) {
+            shownPoints.add(new ArrayList<String>(storeIds));
+        }
+    }
+
+    public void navigateToStore(String storeId) {
+        synchronized (LOCK) {
+            navigatedStores.add(storeId);
+        }
+    }
+
+    public void clearResources() {
+        synchronized (LOCK) {
+            clears++;
+            generation++;
+            callback = null;
+        }
+    }
+
+    private static boolean isCurrent(int bindGeneration) {
+        synchronized (LOCK) {
+            return bindGeneration == generation;
+        }
+    }
+
+    /**
+     * Report a positioning status to the bound callback, on the main thread
+     */
+    public static void emitStatus(final PLPStatus status) {
+        final OnNavigationReady ready;
+        synchronized (LOCK) {
+            ready = callback;
+        }
+        if (ready != null) {
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    ready.onStatusChanged(status);
+                }
+            });
+        }
+    }
+
+    public static void reset() {
+        synchronized (LOCK) {
+            instance = null;
+            setupDelayMs = 0;
+            mapDelayMs = 0;
+            storesDelayMs = 0;
+            bindError = null;
+            instances = 0;
+            binds = 0;
+            clears = 0;
+            generation++;
+            callback = null;
+            shownPoints.clear();
+            navigatedStores.clear();
+        }
+    }
+
+    public static void setDelays(long setupMs, long mapMs, long storesMs) {
+        synchronized (LOCK) {
+            setupDelayMs = setupMs;
+            mapDelayMs = mapMs;
+            storesDelayMs = storesMs;
+        }
+    }
+
+    public static void setBindError(RuntimeException error) {
+        synchronized (LOCK) {
+            bindError = error;
+        }
+    }
+
+    public static int getInstanceCount() {
+        synchronized (LOCK) {
+            return instances;
+        }
+    }
+
+    public static int getBindCount() {
+        synchronized (LOCK) {
+            return binds;
+        }
+    }
+
+    public static int getClearCount() {
+        synchronized (LOCK) {
+            return clears;
+        }
+    }
+
+    public static List<List<String>> getShownPoints() {
+        synchronized (LOCK) {
+            return new ArrayList<List<String>>(shownPoints);
+        }
+    }
+
+    public static List<String> getNavigatedStores() {
+        synchronized (LOCK) {
+            return new ArrayList<String>(navigatedStores);
+        }
+    }
+}
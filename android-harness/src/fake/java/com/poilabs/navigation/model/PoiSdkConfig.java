@@ -0,0 +1,29 @@
+package com.poilabs.navigation.model;
+
+/**
+ * Fake of the SDK configuration, holding the venue credentials
+ */
+public class PoiSdkConfig {
+
+    private final String applicationId;
+    private final String applicationSecret;
+    private final String uniqueId;
+
+    public PoiSdkConfig(String applicationId, String applicationSecret, String uniqueId) {
+        this.applicationId = applicationId;
+        this.applicationSecret = applicationSecret;
+        this.uniqueId = uniqueId;
+    }
+
+    public String getApplicationId() {
+        return applicationId;
+    }
+
+    public String getApplicationSecret() {
+        return applicationSecret;
+    }
+
+    public String getUniqueId() {
+        return uniqueId;
+    }
+}
@@ -0,0 +1,23 @@
+package com.poilabs.navigation.view.fragments;
+
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.fragment.app.Fragment;
+
+/**
+ * Fake of the SDK map, an empty view standing in for the Mapbox map
+ */
+public class MapFragment extends Fragment {
+
+    public MapFragment() {
+    }
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        return new FrameLayout(inflater.getContext());
+    }
+}
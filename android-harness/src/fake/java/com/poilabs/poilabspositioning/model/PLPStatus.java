@@ -0,0 +1,10 @@
+package com.poilabs.poilabspositioning.model;
+
+/**
+ * Fake of the SDK positioning status, the templates only report it as a string
+ */
+public enum PLPStatus {
+    STARTED,
+    POSITIONING,
+    STOPPED
+}
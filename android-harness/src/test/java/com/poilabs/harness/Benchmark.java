@@ -0,0 +1,108 @@
+package com.poilabs.harness;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * JMH-style runner for benchmarks of the templates.
+ *
+ * JMH forks a plain JVM, where the Android classes the templates use are
+ * stubs, so benchmarks run inside the Robolectric test instead: a number of
+ * warmup iterations, then measured ones, each running the operation a fixed
+ * number of times. Results are consumed into a sink so the JIT cannot drop
+ * the work, like a JMH Blackhole. Reports time per operation and, on
+ * HotSpot, bytes allocated per operation.
+ *
+ * Benchmarks are skipped unless the build runs with -Pbenchmark=true.
+ */
+public final class Benchmark {
+
+    public interface Operation {
+        Object run(int index);
+    }
+
+    public static final int WARMUP_ITERATIONS = 5;
+    public static final int MEASURED_ITERATIONS = 10;
+
+    private static volatile int sink;
+
+    private Benchmark() {
+    }
+
+    public static void assumeEnabled() {
+        assumeTrue("Benchmarks run with -Pbenchmark=true", Boolean.getBoolean("poilabs.benchmark"));
+    }
+
+    public static Result run(String name, int operationsPerIteration, Operation operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iterate(operationsPerIteration, operation);
+        }
+
+        double[] nanosPerOperation = new double[MEASURED_ITERATIONS];
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            iterate(operationsPerIteration, operation);
+            nanosPerOperation[i] = (double) (System.nanoTime() - start) / operationsPerIteration;
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        Result result = new Result(name, nanosPerOperation,
+                allocatedBefore >= 0 ? (double) allocated / ((long) MEASURED_ITERATIONS * operationsPerIteration) : -1);
+        System.out.println(result);
+        return result;
+    }
+
+    private static void iterate(int operations, Operation operation) {
+        for (int i = 0; i < operations; i++) {
+            Object value = operation.run(i);
+            sink += value != null ? value.hashCode() : 0;
+        }
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    public static final class Result {
+        public final String name;
+        public final double meanNanos;
+        public final double p50Nanos;
+        public final double p90Nanos;
+        public final double maxNanos;
+        // Negative when the JVM does not report allocations
+        public final double bytesPerOperation;
+
+        Result(String name, double[] nanosPerOperation, double bytesPerOperation) {
+            double[] sorted = nanosPerOperation.clone();
+            Arrays.sort(sorted);
+            double total = 0;
+            for (double value : sorted) {
+                total += value;
+            }
+            this.name = name;
+            this.meanNanos = total / sorted.length;
+            this.p50Nanos = sorted[sorted.length / 2];
+            this.p90Nanos = sorted[(int) Math.ceil(sorted.length * 0.9) - 1];
+            this.maxNanos = sorted[sorted.length - 1];
+            this.bytesPerOperation = bytesPerOperation;
+        }
+
+        public double operationsPerSecond() {
+            return meanNanos > 0 ? 1e9 / meanNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-48s %12.1f ns/op  p50 %12.1f  p90 %12.1f  max %12.1f  %10.1f B/op",
+                    name, meanNanos, p50Nanos, p90Nanos, maxNanos, bytesPerOperation);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.poilabs.harness;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.Manifest;
+import android.app.Application;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.fragment.app.FragmentActivity;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.uimanager.ThemedReactContext;
+import com.poilabs.navigation.model.PoiNavigation;
+
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+
+/**
+ * Shared setup for tests driving the templates against the fake SDK.
+ *
+ * Tests run on the main thread with a paused looper: SDK callbacks and posted
+ * work only run when a test idles or advances it. The session is a process
+ * singleton, so every test resets it first.
+ */
+public final class Harness {
+
+    public static final String APPLICATION_ID = "harness-app";
+    public static final String APPLICATION_SECRET = "harness-secret";
+    public static final String UNIQUE_ID = "harness-venue";
+    public static final String LANGUAGE = "en";
+
+    private static final long AWAIT_TIMEOUT_MS = 5000;
+
+    private Harness() {
+    }
+
+    /**
+     * Release the session, position and proximity state and the fake SDK left by a previous test
+     */
+    public static void reset() {
+        PoiNavigationSession session = PoiNavigationSession.getInstance();
+        session.setHeld(false);
+        session.setPositioningStopped(false);
+        session.setIdleTimeoutMs(PoiNavigationSession.DEFAULT_IDLE_TIMEOUT_MS);
+        session.setBackgroundGraceMs(PoiNavigationSession.DEFAULT_BACKGROUND_GRACE_MS);
+        session.configureVenueCache(PoiVenueCache.DEFAULT_MAX_VENUES, true);
+        session.release();
+        session.setInBackground(false);
+        idleMain();
+        forgetConfig(session);
+        session.clearVenueCache();
+        PoiNavigation.reset();
+        PoiMetrics.getInstance().reset();
+
+        PoiPositionStream stream = PoiPositionStream.getInstance();
+        stream.setDefaultSource(null);
+        stream.setSource(null);
+        stream.setEnabled(false);
+        stream.configure(PoiPositionStream.DEFAULT_MAX_RATE_HZ, PoiPositionStream.DEFAULT_BATCH_INTERVAL_MS, true,
+                PoiPositionStream.DEFAULT_STATIONARY_METERS, PoiPositionStream.DEFAULT_STATIONARY_INTERVAL_MS);
+        stream.setReactContext(null);
+        stream.resetStats();
+
+        PoiProximityEngine proximity = PoiProximityEngine.getInstance();
+        proximity.clearZones();
+        proximity.configure(PoiProximityEngine.DEFAULT_CELL_SIZE_METERS, PoiProximityEngine.DEFAULT_EXIT_MARGIN_METERS);
+        proximity.setReactContext(null);
+        proximity.resetStats();
+    }
+
+    /**
+     * The session keeps the last configuration for resume for the life of the
+     * process, which here spans every test in the sandbox
+     */
+    private static void forgetConfig(PoiNavigationSession session) {
+        try {
+            Field context = PoiNavigationSession.class.getDeclaredField("context");
+            context.setAccessible(true);
+            context.set(session, null);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public static void idleMain() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    public static void advance(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+
+    public interface Condition {
+        boolean isMet();
+    }
+
+    /**
+     * Run the main looper until the condition holds. The setup thread waits
+     * for its main thread step, so the looper has to run while waiting.
+     */
+    public static void await(String description, Condition condition) {
+        long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT_MS;
+        while (!condition.isMet()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Timed out waiting for " + description);
+            }
+            idleMain();
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+        idleMain();
+    }
+
+    /**
+     * Run the main looper until the SDK was bound the given number of times in total
+     */
+    public static void awaitBinds(final int count) {
+        await("bind " + count, new Condition() {
+            @Override
+            public boolean isMet() {
+                return PoiNavigation.getBindCount() >= count;
+            }
+        });
+    }
+
+    public static void grantLocationPermission() {
+        Application application = RuntimeEnvironment.getApplication();
+        shadowOf(application).grantPermissions(
+                Manifest.permission.ACCESS_FINE_LOCATION,
+                Manifest.permission.ACCESS_COARSE_LOCATION);
+    }
+
+    public static void startSession() {
+        PoiNavigationSession.getInstance().start(RuntimeEnvironment.getApplication(), APPLICATION_ID,
+                APPLICATION_SECRET, UNIQUE_ID, LANGUAGE);
+    }
+
+    public static ActivityController<FragmentActivity> startActivity() {
+        return Robolectric.buildActivity(FragmentActivity.class).setup();
+    }
+
+    /**
+     * A React context whose current activity is the given one, as while the app is resumed
+     */
+    public static ReactApplicationContext reactContext(FragmentActivity activity) {
+        ReactApplicationContext context = new ReactApplicationContext(activity.getApplicationContext());
+        context.onHostResume(activity);
+        return context;
+    }
+
+    /**
+     * Add a container with the given id and size to the activity, like React placing a view
+     */
+    public static FrameLayout addContainer(FragmentActivity activity, int id) {
+        FrameLayout container = new FrameLayout(activity);
+        container.setId(id);
+        attach(activity, container);
+        return container;
+    }
+
+    public static void attach(FragmentActivity activity, View view) {
+        FrameLayout root = activity.findViewById(android.R.id.content);
+        root.addView(view, new FrameLayout.LayoutParams(1080, 1920));
+        view.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, 1080, 1920);
+    }
+
+    /**
+     * Create a map view through the manager the way React mounts one: props
+     * first, then the view is placed and laid out
+     */
+    public static PoiMapContainerView mountMapView(PoiMapViewManager manager, ThemedReactContext context,
+            FragmentActivity activity, int viewTag) {
+        PoiMapContainerView view = manager.createViewInstance(context);
+        view.setId(viewTag);
+        manager.setApplicationId(view, APPLICATION_ID);
+        manager.setApplicationSecret(view, APPLICATION_SECRET);
+        manager.setUniqueId(view, UNIQUE_ID);
+        manager.setLanguage(view, LANGUAGE);
+        attach(activity, view);
+        return view;
+    }
+
+    /**
+     * Drop a map view the way React unmounts one
+     */
+    public static void unmountMapView(PoiMapViewManager manager, PoiMapContainerView view) {
+        manager.onDropViewInstance(view);
+        ((ViewGroup) view.getParent()).removeView(view);
+    }
+
+    public static PoiMapFragment mapFragment(int viewTag) {
+        return PoiMapFragment.newInstance(viewTag, APPLICATION_ID, APPLICATION_SECRET, UNIQUE_ID, LANGUAGE,
+                null, null);
+    }
+}
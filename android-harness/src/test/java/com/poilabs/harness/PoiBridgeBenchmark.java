@@ -0,0 +1,106 @@
+package com.poilabs.harness;
+
+import androidx.fragment.app.FragmentActivity;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+
+/**
+ * Cost of the bridge entry points: showing store ID arrays from JS on a map
+ * view and creating the map fragment for a view
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PoiBridgeBenchmark {
+
+    private static final int VIEW_TAG = 1;
+
+    private ActivityController<FragmentActivity> controller;
+    private PoiMapModule module;
+    private PoiMapCommandBus.Target target;
+
+    @Before
+    public void setUp() {
+        Benchmark.assumeEnabled();
+        Harness.reset();
+        Harness.grantLocationPermission();
+        controller = Harness.startActivity();
+    }
+
+    @After
+    public void tearDown() {
+        if (target != null) {
+            PoiMapCommandBus.getInstance().unregister(VIEW_TAG, target);
+        }
+        if (module != null) {
+            module.invalidate();
+        }
+        if (controller != null) {
+            controller.pause().stop().destroy();
+        }
+        Harness.reset();
+    }
+
+    @Test
+    public void arrayConversion() {
+        module = new PoiMapModule(Harness.reactContext(controller.get()));
+        // Stands in for a mounted view, so each call converts the array and delivers the command
+        final PoiMapCommand[] received = new PoiMapCommand[1];
+        target = new PoiMapCommandBus.Target() {
+            @Override
+            public void onCommand(PoiMapCommand command) {
+                received[0] = command;
+            }
+        };
+        PoiMapCommandBus.getInstance().register(VIEW_TAG, target);
+
+        for (int size : new int[] { 10, 1000, 10000 }) {
+            final JavaOnlyArray storeIds = new JavaOnlyArray();
+            for (int i = 0; i < size; i++) {
+                storeIds.pushString("store-" + i);
+            }
+            Benchmark.run("showPointOnMap " + size + " ids", 1000000 / size, new Benchmark.Operation() {
+                @Override
+                public Object run(int index) {
+                    module.showPointOnMap(storeIds, VIEW_TAG);
+                    return received[0];
+                }
+            });
+        }
+    }
+
+    @Test
+    public void fragmentCreation() {
+        final FragmentActivity activity = controller.get();
+        Harness.addContainer(activity, 1);
+        // Bound once up front, so only the fragment and its attach to the ready session are measured
+        Harness.startSession();
+        Harness.awaitBinds(1);
+
+        Benchmark.run("PoiMapFragment newInstance", 10000, new Benchmark.Operation() {
+            @Override
+            public Object run(int index) {
+                return Harness.mapFragment(1);
+            }
+        });
+        Benchmark.run("PoiMapFragment mount and unmount", 200, new Benchmark.Operation() {
+            @Override
+            public Object run(int index) {
+                PoiMapFragment fragment = Harness.mapFragment(1);
+                activity.getSupportFragmentManager().beginTransaction()
+                        .replace(1, fragment)
+                        .commitNow();
+                Harness.idleMain();
+                activity.getSupportFragmentManager().beginTransaction()
+                        .remove(fragment)
+                        .commitNow();
+                return fragment;
+            }
+        });
+    }
+}
@@ -0,0 +1,75 @@
+package com.poilabs.harness;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Highlight updates as a view applies them: the same set sent again, a new
+ * set replacing it, and a delta adding and removing one store
+ */
+public class PoiHighlightSetBenchmark {
+
+    private static final int[] SIZES = { 100, 1000, 10000 };
+
+    @Before
+    public void setUp() {
+        Benchmark.assumeEnabled();
+    }
+
+    @Test
+    public void unchangedReplace() {
+        for (int size : SIZES) {
+            final List<String> storeIds = storeIds("store-", size);
+            final PoiHighlightSet set = new PoiHighlightSet();
+            set.replaceAll(storeIds);
+            Benchmark.run("unchanged replace " + size + " ids", 1000000 / size, new Benchmark.Operation() {
+                @Override
+                public Object run(int index) {
+                    return set.update(storeIds, null, null);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void changedReplace() {
+        for (int size : SIZES) {
+            final List<String> first = storeIds("store-", size);
+            final List<String> second = storeIds("other-", size);
+            final PoiHighlightSet set = new PoiHighlightSet();
+            Benchmark.run("changed replace " + size + " ids", 1000000 / size, new Benchmark.Operation() {
+                @Override
+                public Object run(int index) {
+                    return set.update(index % 2 == 0 ? first : second, null, null);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void delta() {
+        for (int size : SIZES) {
+            final PoiHighlightSet set = new PoiHighlightSet();
+            set.replaceAll(storeIds("store-", size));
+            final List<String> added = Collections.singletonList("added");
+            Benchmark.run("add and remove one of " + size + " ids", 1000000 / size, new Benchmark.Operation() {
+                @Override
+                public Object run(int index) {
+                    return index % 2 == 0 ? set.update(null, added, null) : set.update(null, null, added);
+                }
+            });
+        }
+    }
+
+    private static List<String> storeIds(String prefix, int size) {
+        List<String> storeIds = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            storeIds.add(prefix + i);
+        }
+        return storeIds;
+    }
+}
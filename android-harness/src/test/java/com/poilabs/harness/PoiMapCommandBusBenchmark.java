@@ -0,0 +1,167 @@
+package com.poilabs.harness;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command delivery through the bus against the LocalBroadcastManager path it
+ * replaced, where every command was an Intent carrying its store IDs as an
+ * ArrayList extra and matched against the receiver's filter
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PoiMapCommandBusBenchmark {
+
+    private static final int VIEW_TAG = 21;
+    private static final String ACTION = "com.poilabs.harness.SHOW_POINTS";
+    private static final String EXTRA_STORE_IDS = "storeIds";
+    private static final String EXTRA_VIEW_TAG = "viewTag";
+
+    private final PoiMapCommandBus bus = PoiMapCommandBus.getInstance();
+    private final ArrayList<String> storeIds = new ArrayList<String>();
+    private int received;
+
+    private final PoiMapCommandBus.Target target = new PoiMapCommandBus.Target() {
+        @Override
+        public void onCommand(PoiMapCommand command) {
+            received += command.storeIds.size();
+        }
+    };
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (intent.getIntExtra(EXTRA_VIEW_TAG, -1) != VIEW_TAG) {
+                return;
+            }
+            List<String> ids = intent.getStringArrayListExtra(EXTRA_STORE_IDS);
+            received += ids.size();
+        }
+    };
+
+    private LocalBroadcastManager broadcastManager;
+
+    @Before
+    public void setUp() {
+        Benchmark.assumeEnabled();
+        for (int i = 0; i < 10; i++) {
+            storeIds.add("store-" + i);
+        }
+        bus.register(VIEW_TAG, target);
+        broadcastManager = LocalBroadcastManager.getInstance(RuntimeEnvironment.getApplication());
+        broadcastManager.registerReceiver(receiver, new IntentFilter(ACTION));
+    }
+
+    @After
+    public void tearDown() {
+        bus.unregister(VIEW_TAG, target);
+        if (broadcastManager != null) {
+            broadcastManager.unregisterReceiver(receiver);
+        }
+    }
+
+    @Test
+    public void synchronousDelivery() {
+        Benchmark.Result busResult = Benchmark.run("bus deliver", 100000, new Benchmark.Operation() {
+            @Override
+            public Object run(int index) {
+                return bus.deliver(VIEW_TAG, PoiMapCommand.showPoints(storeIds));
+            }
+        });
+        Benchmark.Result broadcastResult = Benchmark.run("LocalBroadcastManager sendBroadcastSync", 100000,
+                new Benchmark.Operation() {
+                    @Override
+                    public Object run(int index) {
+                        broadcastManager.sendBroadcastSync(showPointsIntent());
+                        return received;
+                    }
+                });
+        report("commands", 1, busResult, broadcastResult);
+    }
+
+    @Test
+    public void postedDelivery() {
+        final int batch = 100;
+        // The bus only posts for callers off the main thread, which is where the module sends from
+        Benchmark.Result busResult = Benchmark.run("bus send from a module thread, " + batch + " commands", 20,
+                new Benchmark.Operation() {
+                    @Override
+                    public Object run(int index) {
+                        received = 0;
+                        Thread sender = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                for (int i = 0; i < batch; i++) {
+                                    bus.send(VIEW_TAG, PoiMapCommand.showPoints(storeIds));
+                                }
+                            }
+                        });
+                        sender.start();
+                        join(sender);
+                        Harness.idleMain();
+                        assertEquals(batch * storeIds.size(), received);
+                        return received;
+                    }
+                });
+        Benchmark.Result broadcastResult = Benchmark.run("LocalBroadcastManager sendBroadcast, " + batch + " commands",
+                20, new Benchmark.Operation() {
+                    @Override
+                    public Object run(int index) {
+                        received = 0;
+                        Thread sender = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                for (int i = 0; i < batch; i++) {
+                                    broadcastManager.sendBroadcast(showPointsIntent());
+                                }
+                            }
+                        });
+                        sender.start();
+                        join(sender);
+                        Harness.idleMain();
+                        assertEquals(batch * storeIds.size(), received);
+                        return received;
+                    }
+                });
+        report("posted commands", batch, busResult, broadcastResult);
+    }
+
+    private Intent showPointsIntent() {
+        Intent intent = new Intent(ACTION);
+        intent.putExtra(EXTRA_VIEW_TAG, VIEW_TAG);
+        intent.putStringArrayListExtra(EXTRA_STORE_IDS, new ArrayList<String>(storeIds));
+        return intent;
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void report(String name, int commandsPerOperation, Benchmark.Result bus,
+            Benchmark.Result broadcast) {
+        System.out.println(String.format(Locale.US, "%-48s %12.0f vs %12.0f per second, %.1fx faster",
+                name, bus.operationsPerSecond() * commandsPerOperation,
+                broadcast.operationsPerSecond() * commandsPerOperation, broadcast.meanNanos / bus.meanNanos));
+    }
+}
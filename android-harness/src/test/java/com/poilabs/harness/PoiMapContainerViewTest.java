@@ -0,0 +1,94 @@
+package com.poilabs.harness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.fragment.app.FragmentActivity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+
+/**
+ * Layout passes of the map host over a mount, idle and unmount cycle
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PoiMapContainerViewTest {
+
+    private ActivityController<FragmentActivity> controller;
+    private PoiMapContainerView view;
+    private int layoutPasses;
+
+    @Before
+    public void setUp() {
+        controller = Harness.startActivity();
+        view = new PoiMapContainerView(controller.get()) {
+            @Override
+            protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+                super.onLayout(changed, left, top, right, bottom);
+                layoutPasses++;
+            }
+        };
+        Harness.attach(controller.get(), view);
+        Harness.idleMain();
+    }
+
+    @After
+    public void tearDown() {
+        controller.pause().stop().destroy();
+    }
+
+    @Test
+    public void idleViewRunsNoLayoutPass() {
+        layoutPasses = 0;
+        Harness.advance(10000);
+        assertEquals(0, layoutPasses);
+    }
+
+    @Test
+    public void childLayoutRequestsCollapseIntoOnePass() {
+        FrameLayout child = new FrameLayout(controller.get());
+        view.addView(child);
+        Harness.idleMain();
+
+        layoutPasses = 0;
+        for (int i = 0; i < 10; i++) {
+            child.requestLayout();
+        }
+        Harness.idleMain();
+        assertTrue("passes: " + layoutPasses, layoutPasses >= 1 && layoutPasses <= 2);
+
+        layoutPasses = 0;
+        Harness.advance(10000);
+        assertEquals(0, layoutPasses);
+    }
+
+    @Test
+    public void childIsMeasuredToTheHostSize() {
+        View child = new View(controller.get());
+        view.addView(child);
+        Harness.idleMain();
+
+        assertEquals(view.getWidth(), child.getWidth());
+        assertEquals(view.getHeight(), child.getHeight());
+    }
+
+    @Test
+    public void releasedViewRunsNoLayoutPass() {
+        // React removes the view from its parent before dropping it
+        ((ViewGroup) view.getParent()).removeView(view);
+        view.release();
+        layoutPasses = 0;
+        view.requestLayout();
+        view.scheduleLayout();
+        Harness.advance(10000);
+        assertEquals(0, layoutPasses);
+    }
+}
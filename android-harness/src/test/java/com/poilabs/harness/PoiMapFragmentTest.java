@@ -0,0 +1,181 @@
+package com.poilabs.harness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import androidx.fragment.app.FragmentActivity;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableMap;
+import com.poilabs.navigation.model.PoiNavigation;
+import com.poilabs.navigation.view.fragments.MapFragment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class PoiMapFragmentTest {
+
+    private static final int VIEW_TAG = 11;
+
+    private ActivityController<FragmentActivity> controller;
+    private PoiMapFragment fragment;
+
+    @Before
+    public void setUp() {
+        Harness.reset();
+        Harness.grantLocationPermission();
+        controller = Harness.startActivity();
+    }
+
+    @After
+    public void tearDown() {
+        controller.pause().stop().destroy();
+        Harness.reset();
+    }
+
+    private void mount() {
+        FragmentActivity activity = controller.get();
+        Harness.addContainer(activity, VIEW_TAG);
+        fragment = Harness.mapFragment(VIEW_TAG);
+        activity.getSupportFragmentManager().beginTransaction()
+                .replace(VIEW_TAG, fragment)
+                .commitNow();
+    }
+
+    @Test
+    public void showsTheSdkMapInItsLayout() {
+        mount();
+        Harness.awaitBinds(1);
+
+        assertTrue(fragment.getChildFragmentManager().findFragmentById(R.id.mapLayout) instanceof MapFragment);
+        assertTrue(PoiNavigationSession.getInstance().hasListener());
+    }
+
+    @Test
+    public void commandsWaitForTheStores() {
+        PoiNavigation.setDelays(0, 0, 1000);
+        mount();
+        Harness.awaitBinds(1);
+
+        PoiMapCommandBus.getInstance().send(VIEW_TAG,
+                PoiMapCommand.highlight(Arrays.asList("a", "b"), null, null, null));
+        PoiMapCommandBus.getInstance().send(VIEW_TAG, PoiMapCommand.navigateTo("c"));
+        Harness.idleMain();
+        assertTrue(PoiNavigation.getShownPoints().isEmpty());
+
+        Harness.advance(1000);
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b")), PoiNavigation.getShownPoints());
+        assertEquals(Collections.singletonList("c"), PoiNavigation.getNavigatedStores());
+    }
+
+    @Test
+    public void timedOutRouteIsNotDrawnLater() {
+        PoiRouteScheduler scheduler = PoiRouteScheduler.getInstance();
+        PoiNavigation.setDelays(0, 0, 1000);
+        mount();
+        Harness.awaitBinds(1);
+
+        scheduler.setTimeoutMs(500);
+        try {
+            Promise promise = mock(Promise.class);
+            scheduler.request("c", VIEW_TAG, promise);
+            // Reaches the view and waits there for the stores
+            Harness.advance(PoiRouteScheduler.DEFAULT_DEBOUNCE_MS);
+            Harness.advance(500);
+            verify(promise).reject(eq("ROUTE_TIMEOUT"), anyString());
+
+            Harness.advance(1000);
+            assertTrue(PoiNavigationSession.getInstance().isStoresReady());
+            assertTrue(PoiNavigation.getNavigatedStores().isEmpty());
+        } finally {
+            scheduler.setTimeoutMs(PoiRouteScheduler.DEFAULT_TIMEOUT_MS);
+        }
+    }
+
+    @Test
+    public void bindFailureRejectsTheQueuedRoute() {
+        PoiNavigation.setBindError(new IllegalStateException("venue not found"));
+        Promise promise = mock(Promise.class);
+        PoiRouteScheduler.getInstance().request("c", VIEW_TAG, promise);
+        // Buffered in the bus until the view registers
+        Harness.advance(PoiRouteScheduler.DEFAULT_DEBOUNCE_MS);
+
+        mount();
+        final PoiNavigationSession session = PoiNavigationSession.getInstance();
+        Harness.await("bind failed", new Harness.Condition() {
+            @Override
+            public boolean isMet() {
+                return !session.isBound();
+            }
+        });
+        Harness.idleMain();
+        verify(promise).reject(eq("ROUTE_ERROR"), anyString());
+        assertTrue(PoiNavigation.getNavigatedStores().isEmpty());
+    }
+
+    @Test
+    public void repeatedHighlightReachesTheSdkOnce() {
+        mount();
+        Harness.awaitBinds(1);
+
+        for (int i = 0; i < 3; i++) {
+            PoiMapCommandBus.getInstance().send(VIEW_TAG,
+                    PoiMapCommand.highlight(Arrays.asList("a", "b", "a"), null, null, null));
+        }
+        Harness.idleMain();
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b")), PoiNavigation.getShownPoints());
+    }
+
+    @Test
+    public void remountedMapShowsItsVenueAsItWasLeft() {
+        mount();
+        Harness.awaitBinds(1);
+        PoiMapCommandBus.getInstance().send(VIEW_TAG,
+                PoiMapCommand.highlight(Arrays.asList("a", "b"), null, null, null));
+        Harness.idleMain();
+        controller.get().getSupportFragmentManager().beginTransaction()
+                .remove(fragment)
+                .commitNow();
+
+        mount();
+        Harness.idleMain();
+        List<List<String>> shown = PoiNavigation.getShownPoints();
+        assertEquals(2, shown.size());
+        assertEquals(Arrays.asList("a", "b"), shown.get(1));
+        ReadableMap stats = PoiNavigationSession.getInstance().getVenueCacheStats();
+        // The first mount found nothing to restore
+        assertEquals(1, stats.getInt("hits"));
+        assertEquals(1, stats.getInt("misses"));
+    }
+
+    @Test
+    public void removingTheViewKeepsTheMapUntilTheIdleTimeout() {
+        mount();
+        Harness.awaitBinds(1);
+
+        controller.get().getSupportFragmentManager().beginTransaction()
+                .remove(fragment)
+                .commitNow();
+        PoiNavigationSession session = PoiNavigationSession.getInstance();
+        assertFalse(session.hasListener());
+        assertTrue(session.isBound());
+
+        Harness.advance(PoiNavigationSession.DEFAULT_IDLE_TIMEOUT_MS);
+        assertFalse(session.isBound());
+        assertEquals(1, PoiNavigation.getClearCount());
+    }
+}
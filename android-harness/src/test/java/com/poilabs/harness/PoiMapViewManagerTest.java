@@ -0,0 +1,178 @@
+package com.poilabs.harness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.widget.FrameLayout;
+
+import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentActivity;
+import androidx.fragment.app.FragmentManager;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.uimanager.ThemedReactContext;
+import com.poilabs.navigation.model.PoiNavigation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+
+@RunWith(RobolectricTestRunner.class)
+public class PoiMapViewManagerTest {
+
+    private static final int CYCLES = 300;
+
+    private ActivityController<FragmentActivity> controller;
+    private PoiMapViewManager manager;
+    private ThemedReactContext themedContext;
+    private int mapFragmentsAttached;
+
+    private final FragmentManager.FragmentLifecycleCallbacks attachCounter =
+            new FragmentManager.FragmentLifecycleCallbacks() {
+                @Override
+                public void onFragmentAttached(FragmentManager fragmentManager, Fragment fragment, Context context) {
+                    if (fragment instanceof PoiMapFragment) {
+                        mapFragmentsAttached++;
+                    }
+                }
+            };
+
+    @Before
+    public void setUp() {
+        Harness.reset();
+        Harness.grantLocationPermission();
+        controller = Harness.startActivity();
+        ReactApplicationContext reactContext = Harness.reactContext(controller.get());
+        manager = new PoiMapViewManager(reactContext);
+        themedContext = new ThemedReactContext(reactContext, controller.get());
+        controller.get().getSupportFragmentManager().registerFragmentLifecycleCallbacks(attachCounter, false);
+    }
+
+    @After
+    public void tearDown() {
+        controller.pause().stop().destroy();
+        Harness.reset();
+    }
+
+    @Test
+    public void mountCreatesTheFragmentOnceLaidOut() {
+        PoiMapContainerView view = Harness.mountMapView(manager, themedContext, controller.get(), 1);
+        Harness.awaitBinds(1);
+
+        assertTrue(findMapFragment(1) instanceof PoiMapFragment);
+        assertTrue(manager.viewStates.get(1).fragmentCreated);
+
+        Harness.unmountMapView(manager, view);
+        Harness.idleMain();
+        assertNull(findMapFragment(1));
+        assertEquals(0, manager.viewStates.size());
+    }
+
+    @Test
+    public void repeatedRequestsCreateOneFragment() {
+        PoiMapContainerView view = Harness.mountMapView(manager, themedContext, controller.get(), 1);
+        // The create command older JS still sends, by name and by ID, and props set again on re-render
+        manager.receiveCommand(view, "create", null);
+        manager.receiveCommand(view, String.valueOf(manager.COMMAND_CREATE), null);
+        manager.setApplicationId(view, Harness.APPLICATION_ID);
+        manager.setApplicationSecret(view, Harness.APPLICATION_SECRET);
+        manager.setUniqueId(view, Harness.UNIQUE_ID);
+        view.layout(0, 0, 720, 1280);
+        Harness.awaitBinds(1);
+
+        manager.receiveCommand(view, "create", null);
+        view.layout(0, 0, 1080, 1920);
+        Harness.idleMain();
+        assertEquals(1, mapFragmentsAttached);
+    }
+
+    @Test
+    public void createCommandBeforeLayoutWaitsForTheSize() {
+        PoiMapContainerView view = manager.createViewInstance(themedContext);
+        view.setId(1);
+        manager.setApplicationId(view, Harness.APPLICATION_ID);
+        manager.setApplicationSecret(view, Harness.APPLICATION_SECRET);
+        manager.setUniqueId(view, Harness.UNIQUE_ID);
+        manager.receiveCommand(view, "create", null);
+        Harness.idleMain();
+        assertEquals(0, mapFragmentsAttached);
+        assertFalse(manager.viewStates.get(1).fragmentCreated);
+
+        Harness.attach(controller.get(), view);
+        Harness.awaitBinds(1);
+        assertEquals(1, mapFragmentsAttached);
+    }
+
+    @Test
+    public void fragmentWaitsForEveryCredential() {
+        PoiMapContainerView view = manager.createViewInstance(themedContext);
+        view.setId(1);
+        manager.setApplicationId(view, Harness.APPLICATION_ID);
+        Harness.attach(controller.get(), view);
+        manager.setApplicationSecret(view, Harness.APPLICATION_SECRET);
+        Harness.idleMain();
+        assertEquals(0, mapFragmentsAttached);
+
+        manager.setUniqueId(view, Harness.UNIQUE_ID);
+        manager.setUniqueId(view, Harness.UNIQUE_ID);
+        Harness.awaitBinds(1);
+        assertEquals(1, mapFragmentsAttached);
+    }
+
+    @Test
+    public void repeatedMountsLeaveNothingBehind() {
+        FragmentActivity activity = controller.get();
+        FrameLayout root = activity.findViewById(android.R.id.content);
+        int rootChildren = root.getChildCount();
+
+        for (int i = 0; i < CYCLES; i++) {
+            // React never reuses a tag
+            int viewTag = 2 + i * 2;
+            PoiMapContainerView view = Harness.mountMapView(manager, themedContext, activity, viewTag);
+            if (i == 0) {
+                Harness.awaitBinds(1);
+            } else {
+                Harness.idleMain();
+            }
+            assertTrue("cycle " + i, findMapFragment(viewTag) instanceof PoiMapFragment);
+
+            Harness.unmountMapView(manager, view);
+            Harness.idleMain();
+        }
+
+        assertEquals(CYCLES, mapFragmentsAttached);
+        assertEquals(0, manager.viewStates.size());
+        assertEquals(rootChildren, root.getChildCount());
+        for (Fragment fragment : activity.getSupportFragmentManager().getFragments()) {
+            assertFalse(fragment instanceof PoiMapFragment);
+        }
+        PoiNavigationSession session = PoiNavigationSession.getInstance();
+        assertFalse(session.hasListener());
+        assertTrue(session.isBound());
+        assertEquals(1, PoiNavigation.getBindCount());
+        assertEquals(1, PoiNavigation.getInstanceCount());
+    }
+
+    @Test
+    public void invalidateDropsViewsReactNeverDropped() {
+        for (int i = 0; i < 10; i++) {
+            Harness.mountMapView(manager, themedContext, controller.get(), 2 + i * 2);
+        }
+        Harness.awaitBinds(1);
+        assertEquals(10, manager.viewStates.size());
+
+        manager.invalidate();
+        assertEquals(0, manager.viewStates.size());
+    }
+
+    private Fragment findMapFragment(int viewTag) {
+        return controller.get().getSupportFragmentManager()
+                .findFragmentByTag(new PoiMapViewState(viewTag).getFragmentTag());
+    }
+}
@@ -0,0 +1,175 @@
+package com.poilabs.harness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+
+import androidx.fragment.app.FragmentActivity;
+
+import com.poilabs.navigation.model.PoiNavigation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class PoiMemoryTrimmerTest {
+
+    private static final int VIEW_TAG = 31;
+
+    private final PoiNavigationSession session = PoiNavigationSession.getInstance();
+    private final Application application = RuntimeEnvironment.getApplication();
+    private final List<PoiStoreCatalog.Store> stores = Arrays.asList(
+            new PoiStoreCatalog.Store("a", "Alpha", null, "0", 41.0, 29.0),
+            new PoiStoreCatalog.Store("b", "Beta", null, "0", 41.0, 29.0));
+    private ActivityController<FragmentActivity> controller;
+    private PoiStoreCatalog catalog;
+
+    @Before
+    public void setUp() {
+        Harness.reset();
+        Harness.grantLocationPermission();
+        PoiMemoryTrimmer.register(application);
+        controller = Harness.startActivity();
+        catalog = PoiStoreCatalog.getInstance(application, Harness.APPLICATION_ID, Harness.UNIQUE_ID);
+        catalog.update(stores);
+    }
+
+    @After
+    public void tearDown() {
+        PoiMemoryTrimmer.unregister();
+        controller.pause().stop().destroy();
+        Harness.reset();
+    }
+
+    @Test
+    public void mildLevelsFreeNothing() {
+        bindWithoutView();
+
+        int[] levels = { ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE, ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN,
+                ComponentCallbacks2.TRIM_MEMORY_BACKGROUND };
+        for (int level : levels) {
+            application.onTrimMemory(level);
+            assertTrue("level " + level, session.isBound());
+            assertFalse("level " + level, isStoreIndexTrimmed());
+        }
+    }
+
+    @Test
+    public void lowLevelsReleaseTheRetainedMapOnly() {
+        int[] levels = { ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW, ComponentCallbacks2.TRIM_MEMORY_MODERATE };
+        for (int level : levels) {
+            bindWithoutView();
+            application.onTrimMemory(level);
+            assertFalse("level " + level, session.isBound());
+            assertFalse("level " + level, isStoreIndexTrimmed());
+        }
+    }
+
+    @Test
+    public void criticalLevelsAlsoDropTheStoreIndex() {
+        int[] levels = { ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL, ComponentCallbacks2.TRIM_MEMORY_COMPLETE };
+        for (int level : levels) {
+            bindWithoutView();
+            application.onTrimMemory(level);
+            assertFalse("level " + level, session.isBound());
+            assertTrue("level " + level, isStoreIndexTrimmed());
+        }
+    }
+
+    @Test
+    public void mapShownInAViewIsKept() {
+        mount();
+        Harness.awaitBinds(1);
+
+        application.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertTrue(session.isBound());
+        assertEquals(0, PoiNavigation.getClearCount());
+    }
+
+    @Test
+    public void heldSessionIsKept() {
+        bindWithoutView();
+        session.setHeld(true);
+
+        application.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertTrue(session.isBound());
+    }
+
+    @Test
+    public void retainedStateStaysFlatOverRepeatedMounts() {
+        int cycles = 50;
+        // The session outlives a test, so its counters are compared with their starting value
+        int memoryReleases = session.getMountStats().getInt("memoryReleases");
+        for (int i = 0; i < cycles; i++) {
+            PoiMapFragment fragment = mount();
+            Harness.awaitBinds(i + 1);
+            controller.get().getSupportFragmentManager().beginTransaction()
+                    .remove(fragment)
+                    .commitNow();
+            application.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+            assertFalse("cycle " + i, session.isBound());
+        }
+
+        assertEquals(cycles, PoiNavigation.getInstanceCount());
+        assertEquals(cycles, PoiNavigation.getClearCount());
+        assertEquals(memoryReleases + cycles, session.getMountStats().getInt("memoryReleases"));
+        assertEquals(1, session.getVenueCacheStats().getInt("venues"));
+        assertFalse(session.hasListener());
+    }
+
+    private void bindWithoutView() {
+        Harness.startSession();
+        Harness.await("bound", new Harness.Condition() {
+            @Override
+            public boolean isMet() {
+                return session.isBound();
+            }
+        });
+        // Refill the index a previous level dropped
+        catalog.update(stores);
+    }
+
+    private PoiMapFragment mount() {
+        FragmentActivity activity = controller.get();
+        if (activity.findViewById(VIEW_TAG) == null) {
+            Harness.addContainer(activity, VIEW_TAG);
+        }
+        PoiMapFragment fragment = Harness.mapFragment(VIEW_TAG);
+        activity.getSupportFragmentManager().beginTransaction()
+                .replace(VIEW_TAG, fragment)
+                .commitNow();
+        return fragment;
+    }
+
+    /**
+     * An index in memory still answers after its file is gone, a dropped one is reloaded from it
+     */
+    private boolean isStoreIndexTrimmed() {
+        File[] files = application.getFilesDir().listFiles();
+        File saved = null;
+        for (File file : files) {
+            if (file.getName().startsWith("poilabs_store_catalog_")) {
+                saved = file;
+            }
+        }
+        File moved = new File(saved.getPath() + ".moved");
+        assertTrue(saved.renameTo(moved));
+        try {
+            return catalog.size() == 0;
+        } finally {
+            assertTrue(moved.renameTo(saved));
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.poilabs.harness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.poilabs.navigation.model.PoiNavigation;
+import com.poilabs.navigation.view.fragments.MapFragment;
+import com.poilabs.poilabspositioning.model.PLPStatus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class PoiNavigationSessionTest {
+
+    private final PoiNavigationSession session = PoiNavigationSession.getInstance();
+
+    @Before
+    public void setUp() {
+        Harness.reset();
+    }
+
+    @After
+    public void tearDown() {
+        Harness.reset();
+    }
+
+    @Test
+    public void startBindsOnceForTheSameVenue() {
+        Harness.startSession();
+        Harness.awaitBinds(1);
+        assertTrue(session.isBound());
+        assertTrue(session.isStoresReady());
+
+        Harness.startSession();
+        Harness.idleMain();
+        assertEquals(1, PoiNavigation.getBindCount());
+        assertEquals(1, PoiNavigation.getInstanceCount());
+    }
+
+    @Test
+    public void attachReplaysTheReadyMapAndStores() {
+        Harness.startSession();
+        Harness.awaitBinds(1);
+
+        RecordingListener listener = new RecordingListener();
+        session.attach(listener);
+        assertEquals(1, listener.mapsReady.size());
+        assertEquals(1, listener.storesReady);
+        session.detach(listener);
+    }
+
+    @Test
+    public void mapGoesToTheLastAttachedListenerAndBack() {
+        Harness.startSession();
+        Harness.awaitBinds(1);
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+
+        session.attach(first);
+        session.attach(second);
+        assertEquals(1, first.mapsLost.size());
+        assertSame(first.mapsReady.get(0), second.mapsReady.get(0));
+
+        session.detach(second);
+        assertEquals(1, second.mapsLost.size());
+        assertEquals(2, first.mapsReady.size());
+        session.detach(first);
+    }
+
+    @Test
+    public void idleTimeoutReleasesTheMapWithoutListeners() {
+        session.setIdleTimeoutMs(1000);
+        Harness.startSession();
+        Harness.awaitBinds(1);
+        RecordingListener listener = new RecordingListener();
+        session.attach(listener);
+        session.detach(listener);
+
+        Harness.advance(999);
+        assertTrue(session.isBound());
+        Harness.advance(2);
+        assertFalse(session.isBound());
+        assertEquals(1, PoiNavigation.getClearCount());
+    }
+
+    @Test
+    public void statusIsBroadcastToEveryListener() {
+        Harness.startSession();
+        Harness.awaitBinds(1);
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        session.attach(first);
+        session.attach(second);
+
+        PoiNavigation.emitStatus(PLPStatus.POSITIONING);
+        Harness.idleMain();
+        assertEquals(1, first.statuses);
+        assertEquals(1, second.statuses);
+        assertEquals("POSITIONING", session.getLastStatus());
+        session.detach(second);
+        session.detach(first);
+    }
+
+    @Test
+    public void setupFinishingAfterReleaseClearsItsInstance() {
+        PoiNavigation.setDelays(50, 0, 0);
+        Harness.startSession();
+        Harness.idleMain();
+        session.release();
+
+        Harness.await("stale setup", new Harness.Condition() {
+            @Override
+            public boolean isMet() {
+                return PoiNavigation.getInstanceCount() == 1 && PoiNavigation.getClearCount() == 1;
+            }
+        });
+        assertEquals(0, PoiNavigation.getBindCount());
+        assertFalse(session.isBound());
+    }
+
+    @Test
+    public void bindErrorFailsWaitingCallers() {
+        PoiNavigation.setBindError(new IllegalStateException("venue not found"));
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Harness.startSession();
+        session.whenReady(new PoiNavigationSession.ReadyCallback() {
+            @Override
+            public void onReady() {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                errors.add(throwable);
+            }
+        });
+
+        Harness.awaitBinds(1);
+        assertEquals(1, errors.size());
+        assertFalse(session.isBound());
+    }
+
+    @Test
+    public void anotherVenueFailsCallersWaitingForTheOldOne() {
+        PoiNavigation.setDelays(0, 0, 60000);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        final int[] ready = new int[1];
+        Harness.startSession();
+        Harness.awaitBinds(1);
+        session.whenReady(new PoiNavigationSession.ReadyCallback() {
+            @Override
+            public void onReady() {
+                ready[0]++;
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                errors.add(throwable);
+            }
+        });
+        Harness.idleMain();
+
+        PoiNavigation.setDelays(0, 0, 0);
+        session.start(RuntimeEnvironment.getApplication(), Harness.APPLICATION_ID, Harness.APPLICATION_SECRET,
+                "another-venue", Harness.LANGUAGE);
+        Harness.awaitBinds(2);
+        Harness.idleMain();
+        assertEquals(1, errors.size());
+        assertEquals(0, ready[0]);
+        assertTrue(session.isStoresReady());
+    }
+
+    @Test
+    public void backgroundReleasesAfterTheGracePeriodAndForegroundBindsAgain() {
+        Harness.startSession();
+        Harness.awaitBinds(1);
+        RecordingListener listener = new RecordingListener();
+        session.attach(listener);
+
+        session.setInBackground(true);
+        Harness.advance(PoiNavigationSession.DEFAULT_BACKGROUND_GRACE_MS - 1);
+        assertTrue(session.isBound());
+        Harness.advance(1);
+        assertFalse(session.isBound());
+        assertEquals(1, listener.released);
+
+        session.setInBackground(false);
+        Harness.awaitBinds(2);
+        Harness.idleMain();
+        assertEquals(2, listener.mapsReady.size());
+        assertEquals(2, listener.storesReady);
+        session.detach(listener);
+    }
+
+    @Test
+    public void returningWithinTheGracePeriodKeepsTheSession() {
+        Harness.startSession();
+        Harness.awaitBinds(1);
+
+        session.setInBackground(true);
+        Harness.advance(1000);
+        session.setInBackground(false);
+        Harness.advance(PoiNavigationSession.DEFAULT_BACKGROUND_GRACE_MS);
+        assertTrue(session.isBound());
+        assertEquals(0, PoiNavigation.getClearCount());
+    }
+
+    @Test
+    public void heldSessionStaysBoundInTheBackground() {
+        Harness.startSession();
+        Harness.awaitBinds(1);
+        session.setHeld(true);
+
+        session.setInBackground(true);
+        Harness.advance(PoiNavigationSession.DEFAULT_BACKGROUND_GRACE_MS);
+        assertTrue(session.isBound());
+
+        // The grace period starts once headless positioning lets go
+        session.setHeld(false);
+        Harness.advance(PoiNavigationSession.DEFAULT_BACKGROUND_GRACE_MS);
+        assertFalse(session.isBound());
+    }
+
+    @Test
+    public void stoppedPositioningReleasesMapViewsAndKeepsStartFromBinding() {
+        Harness.startSession();
+        Harness.awaitBinds(1);
+        RecordingListener listener = new RecordingListener();
+        session.attach(listener);
+
+        assertTrue(session.setPositioningStopped(true));
+        assertFalse(session.isBound());
+        assertEquals(1, listener.released);
+
+        Harness.startSession();
+        Harness.idleMain();
+        assertFalse(session.isBound());
+        assertEquals(1, PoiNavigation.getBindCount());
+
+        assertFalse(session.setPositioningStopped(false));
+        Harness.awaitBinds(2);
+        Harness.idleMain();
+        assertEquals(2, listener.storesReady);
+        session.detach(listener);
+    }
+
+    static final class RecordingListener implements PoiNavigationSession.Listener {
+        final List<MapFragment> mapsReady = new ArrayList<MapFragment>();
+        final List<MapFragment> mapsLost = new ArrayList<MapFragment>();
+        int storesReady;
+        int statuses;
+        int released;
+
+        @Override
+        public void onMapReady(MapFragment mapFragment) {
+            mapsReady.add(mapFragment);
+        }
+
+        @Override
+        public void onMapLost(MapFragment mapFragment) {
+            mapsLost.add(mapFragment);
+        }
+
+        @Override
+        public void onStoresReady() {
+            storesReady++;
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onStatusChanged(PLPStatus status) {
+            statuses++;
+        }
+
+        @Override
+        public void onReleased() {
+            released++;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.poilabs.harness;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Locale;
+
+/**
+ * Cost of a fix through the stream and how many bridge messages a replay at
+ * 50 Hz turns into, with the emitter counting instead of crossing the bridge
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PoiPositionStreamBenchmark {
+
+    private static final int FIXES = 10000;
+    private static final long FIX_INTERVAL_MS = 20;
+
+    private final PoiPositionStream stream = PoiPositionStream.getInstance();
+    private int messages;
+
+    @Before
+    public void setUp() {
+        Benchmark.assumeEnabled();
+        Harness.reset();
+        ReactApplicationContext context = mock(ReactApplicationContext.class);
+        when(context.hasActiveReactInstance()).thenReturn(true);
+        when(context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)).thenReturn(
+                new DeviceEventManagerModule.RCTDeviceEventEmitter() {
+                    @Override
+                    public void emit(String eventName, Object data) {
+                        messages++;
+                    }
+                });
+        stream.setReactContext(context);
+        stream.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        Harness.advance(PoiPositionStream.DEFAULT_BATCH_INTERVAL_MS);
+        Harness.reset();
+    }
+
+    @Test
+    public void throughput() {
+        Benchmark.run("onPosition, moving", FIXES, new Benchmark.Operation() {
+            @Override
+            public Object run(int index) {
+                stream.onPosition(41.0 + index * 1e-5, 29.0, "0", 3, index * FIX_INTERVAL_MS);
+                flushEvery(index);
+                return null;
+            }
+        });
+        Benchmark.run("onPosition, stationary", FIXES, new Benchmark.Operation() {
+            @Override
+            public Object run(int index) {
+                stream.onPosition(41.0, 29.0, "0", 3, index * FIX_INTERVAL_MS);
+                flushEvery(index);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Include the flush in the cost of a fix, as in use, before the buffer fills
+     */
+    private static void flushEvery(int index) {
+        if (index % PoiPositionStream.CAPACITY == PoiPositionStream.CAPACITY - 1) {
+            Harness.advance(PoiPositionStream.DEFAULT_BATCH_INTERVAL_MS);
+        }
+    }
+
+    @Test
+    public void bridgeMessages() {
+        report("moving", 1e-5);
+        report("stationary", 0);
+    }
+
+    /**
+     * Feed 50 Hz fixes in real-time order, letting the batch timer run between them
+     */
+    private void report(String name, double step) {
+        stream.resetStats();
+        messages = 0;
+        for (int i = 0; i < FIXES; i++) {
+            stream.onPosition(41.0 + i * step, 29.0, "0", 3, i * FIX_INTERVAL_MS);
+            Harness.advance(FIX_INTERVAL_MS);
+        }
+        Harness.advance(PoiPositionStream.DEFAULT_BATCH_INTERVAL_MS);
+
+        ReadableMap stats = stream.getStats();
+        System.out.println(String.format(Locale.US,
+                "%-48s %6d fixes -> %6.0f sent in %5d messages, %.1f fixes per message",
+                "replay at 50 Hz, " + name, FIXES, stats.getDouble("emitted"), messages,
+                (double) FIXES / Math.max(1, messages)));
+    }
+}
@@ -0,0 +1,178 @@
+package com.poilabs.harness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class PoiPositionStreamTest {
+
+    private static final long BATCH_INTERVAL_MS = 250;
+
+    private final PoiPositionStream stream = PoiPositionStream.getInstance();
+    private DeviceEventManagerModule.RCTDeviceEventEmitter emitter;
+
+    @Before
+    public void setUp() {
+        Harness.reset();
+        ReactApplicationContext context = mock(ReactApplicationContext.class);
+        emitter = mock(DeviceEventManagerModule.RCTDeviceEventEmitter.class);
+        when(context.hasActiveReactInstance()).thenReturn(true);
+        when(context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)).thenReturn(emitter);
+        stream.setReactContext(context);
+        stream.configure(5, BATCH_INTERVAL_MS, false, PoiPositionStream.DEFAULT_STATIONARY_METERS,
+                PoiPositionStream.DEFAULT_STATIONARY_INTERVAL_MS);
+        stream.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        // Run a pending flush, the looper is reset between tests
+        Harness.advance(BATCH_INTERVAL_MS);
+        Harness.reset();
+    }
+
+    @Test
+    public void fixesAreRateLimitedByTheirTimestamps() {
+        // One second of fixes at 100 Hz
+        for (int i = 0; i < 100; i++) {
+            stream.onPosition(41.0 + i * 1e-5, 29.0, "0", 3, i * 10);
+        }
+        Harness.advance(BATCH_INTERVAL_MS);
+
+        // One fix per 200 ms, and the last one held back once its interval passed
+        ReadableMap stats = stream.getStats();
+        assertEquals(100, stats.getDouble("received"), 0);
+        assertEquals(6, stats.getDouble("accepted"), 0);
+        assertEquals(94, stats.getDouble("coalesced"), 0);
+        assertEquals(6, stats.getDouble("emitted"), 0);
+        assertEquals(1, stats.getDouble("batches"), 0);
+        ArgumentCaptor<Object> batch = ArgumentCaptor.forClass(Object.class);
+        verify(emitter, times(1)).emit(eq(PoiPositionStream.EVENT_NAME), batch.capture());
+        JavaOnlyMap map = (JavaOnlyMap) batch.getValue();
+        assertEquals(990, map.getArray("values").getDouble(5 * PoiPositionStream.STRIDE + 3), 0);
+    }
+
+    @Test
+    public void fixHeldBackIsSentAndRestartsTheInterval() {
+        stream.onPosition(41.0, 29.0, "0", 3, 1000);
+        stream.onPosition(41.001, 29.0, "0", 3, 1050);
+        assertEquals(1, stream.getStats().getDouble("accepted"), 0);
+
+        // Sent once 200 ms passed since the first fix
+        Harness.advance(150);
+        assertEquals(2, stream.getStats().getDouble("accepted"), 0);
+
+        // Too soon after the fix held back, not after the first one
+        stream.onPosition(41.002, 29.0, "0", 3, 1210);
+        assertEquals(2, stream.getStats().getDouble("accepted"), 0);
+        Harness.advance(BATCH_INTERVAL_MS);
+
+        ArgumentCaptor<Object> batch = ArgumentCaptor.forClass(Object.class);
+        verify(emitter).emit(eq(PoiPositionStream.EVENT_NAME), batch.capture());
+        JavaOnlyMap map = (JavaOnlyMap) batch.getValue();
+        assertEquals(3, map.getInt("count"));
+        assertEquals(1050, map.getArray("values").getDouble(PoiPositionStream.STRIDE + 3), 0);
+        assertEquals(1210, map.getArray("values").getDouble(2 * PoiPositionStream.STRIDE + 3), 0);
+        assertEquals(0, stream.getStats().getDouble("coalesced"), 0);
+    }
+
+    @Test
+    public void batchIsOneFlatArray() {
+        stream.onPosition(41.0, 29.0, "0", 3, 1000);
+        stream.onPosition(41.001, 29.0, "1", 4, 1200);
+        Harness.advance(BATCH_INTERVAL_MS);
+
+        ArgumentCaptor<Object> batch = ArgumentCaptor.forClass(Object.class);
+        verify(emitter).emit(eq(PoiPositionStream.EVENT_NAME), batch.capture());
+        JavaOnlyMap map = (JavaOnlyMap) batch.getValue();
+        assertEquals(2, map.getInt("count"));
+        assertEquals(2 * PoiPositionStream.STRIDE, map.getArray("values").size());
+        assertEquals(41.001, map.getArray("values").getDouble(PoiPositionStream.STRIDE), 0);
+        assertEquals(1200, map.getArray("values").getDouble(PoiPositionStream.STRIDE + 3), 0);
+        assertEquals("1", map.getArray("floors").getString(1));
+    }
+
+    @Test
+    public void olderTimestampStartsOver() {
+        stream.onPosition(41.0, 29.0, "0", 3, 5000);
+        stream.onPosition(41.001, 29.0, "0", 3, 0);
+        Harness.advance(BATCH_INTERVAL_MS);
+
+        assertEquals(2, stream.getStats().getDouble("accepted"), 0);
+    }
+
+    @Test
+    public void nothingIsSentWithoutListeners() {
+        stream.setEnabled(false);
+        stream.onPosition(41.0, 29.0, "0", 3, 0);
+        Harness.advance(BATCH_INTERVAL_MS);
+
+        verify(emitter, never()).emit(any(String.class), any());
+    }
+
+    @Test
+    public void replayKeepsItsRecordedSpacing() {
+        final int fixes = 50;
+        JavaOnlyArray recorded = new JavaOnlyArray();
+        for (int i = 0; i < fixes; i++) {
+            JavaOnlyMap fix = new JavaOnlyMap();
+            fix.putDouble("latitude", 41.0 + i * 1e-5);
+            fix.putDouble("longitude", 29.0);
+            fix.putString("floor", "0");
+            fix.putDouble("timestamp", i * 100);
+            recorded.pushMap(fix);
+        }
+        final boolean[] finished = new boolean[1];
+        // Played 100 times faster than recorded, 5 seconds in 50 ms
+        PoiPositionReplaySource replay = new PoiPositionReplaySource(recorded, 100,
+                new PoiPositionReplaySource.Listener() {
+                    @Override
+                    public void onFinished(int count, long durationMs) {
+                        finished[0] = true;
+                    }
+
+                    @Override
+                    public void onStopped() {
+                    }
+                });
+
+        stream.setSource(replay);
+        assertTrue(stream.hasSource());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!finished[0]) {
+            assertTrue("replay did not finish", System.currentTimeMillis() < deadline);
+            Harness.advance(10);
+        }
+        Harness.advance(BATCH_INTERVAL_MS);
+
+        // Limited to 5 Hz by the recorded timestamps, not by how fast they were played,
+        // plus the last fix held back
+        ReadableMap stats = stream.getStats();
+        assertEquals(fixes, stats.getDouble("received"), 0);
+        assertEquals(26, stats.getDouble("accepted"), 0);
+        assertFalse(stream.hasSource());
+        verify(emitter, times((int) stats.getDouble("batches"))).emit(eq(PoiPositionStream.EVENT_NAME), any());
+        assertTrue(stats.getDouble("batches") <= 2);
+    }
+}
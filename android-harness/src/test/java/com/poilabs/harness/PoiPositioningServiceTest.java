@@ -0,0 +1,181 @@
+package com.poilabs.harness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Application;
+import android.content.ComponentName;
+import android.content.Intent;
+
+import androidx.fragment.app.FragmentActivity;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.android.controller.ServiceController;
+
+@RunWith(RobolectricTestRunner.class)
+public class PoiPositioningServiceTest {
+
+    private final Application application = RuntimeEnvironment.getApplication();
+    private final PoiNavigationSession session = PoiNavigationSession.getInstance();
+    private ActivityController<FragmentActivity> activity;
+    private PoiMapModule module;
+
+    @Before
+    public void setUp() {
+        Harness.reset();
+        activity = Harness.startActivity();
+        module = new PoiMapModule(Harness.reactContext(activity.get()));
+    }
+
+    @After
+    public void tearDown() {
+        module.invalidate();
+        activity.pause().stop().destroy();
+        Harness.reset();
+    }
+
+    @Test
+    public void permissionIsFineOrCoarseLocation() {
+        assertFalse(PoiPositioningService.hasLocationPermission(application));
+        shadowOf(application).grantPermissions(android.Manifest.permission.ACCESS_COARSE_LOCATION);
+        assertTrue(PoiPositioningService.hasLocationPermission(application));
+    }
+
+    @Test
+    public void browseOnlyIsKnownBeforeAnyMapAsksForPermission() {
+        assertTrue(module.isBrowseOnly());
+        Harness.grantLocationPermission();
+        assertFalse(module.isBrowseOnly());
+    }
+
+    @Test
+    public void headlessStartRejectsWithoutTheDeclaredService() {
+        Harness.grantLocationPermission();
+        shadowOf(application.getPackageManager()).removeService(
+                new ComponentName(application, PoiPositioningService.class));
+        assertFalse(PoiPositioningService.isDeclared(application));
+
+        Promise promise = startHeadless();
+        verify(promise).reject(eq("HEADLESS_ERROR"), anyString());
+        assertNull(shadowOf(application).getNextStartedService());
+    }
+
+    @Test
+    public void headlessStartRejectsWithoutPermission() {
+        assertTrue(PoiPositioningService.isDeclared(application));
+        Harness.startSession();
+        Harness.awaitBinds(1);
+
+        Promise promise = startHeadless();
+        verify(promise).reject("HEADLESS_ERROR", "Location permission not granted");
+        assertNull(shadowOf(application).getNextStartedService());
+    }
+
+    @Test
+    public void headlessStartRejectsBeforeTheSdkIsInitialized() {
+        Harness.grantLocationPermission();
+
+        Promise promise = startHeadless();
+        verify(promise).reject(eq("HEADLESS_ERROR"), anyString());
+        verify(promise, never()).resolve(true);
+    }
+
+    @Test
+    public void headlessStartRunsTheService() {
+        Harness.grantLocationPermission();
+        Harness.startSession();
+        Harness.awaitBinds(1);
+
+        Promise promise = startHeadless();
+        verify(promise).resolve(true);
+        Intent started = shadowOf(application).getNextStartedService();
+        assertEquals(PoiPositioningService.class.getName(), started.getComponent().getClassName());
+        assertEquals("Shopping", started.getStringExtra("title"));
+    }
+
+    @Test
+    public void serviceStopsItselfWhenPermissionIsRevoked() {
+        Harness.startSession();
+        Harness.awaitBinds(1);
+
+        ServiceController<PoiPositioningService> controller = startService();
+        assertTrue(shadowOf(controller.get()).isStoppedBySelf());
+        assertFalse(PoiPositioningService.isRunning());
+        assertEquals("Location permission not granted", PoiPositioningService.getStats().getString("error"));
+        controller.destroy();
+    }
+
+    @Test
+    public void serviceStopsItselfBeforeTheSdkIsInitialized() {
+        Harness.grantLocationPermission();
+
+        ServiceController<PoiPositioningService> controller = startService();
+        assertTrue(shadowOf(controller.get()).isStoppedBySelf());
+        assertEquals("SDK not initialized", PoiPositioningService.getStats().getString("error"));
+        controller.destroy();
+    }
+
+    @Test
+    public void runningServiceHoldsTheSessionUntilDestroyed() {
+        Harness.grantLocationPermission();
+        session.setIdleTimeoutMs(1000);
+        Harness.startSession();
+        Harness.awaitBinds(1);
+
+        ServiceController<PoiPositioningService> controller = startService();
+        Harness.idleMain();
+        assertFalse(shadowOf(controller.get()).isStoppedBySelf());
+        assertTrue(PoiPositioningService.isRunning());
+        ReadableMap stats = PoiPositioningService.getStats();
+        assertTrue(stats.getBoolean("sdkBound"));
+        assertNull(stats.getString("error"));
+        assertTrue(stats.hasKey("awakeMsPerHour"));
+        // Measured the same way while map views are attached, to compare with
+        assertTrue(stats.getMap("map").hasKey("awakeMsPerHour"));
+
+        // Neither the idle timeout nor a memory trim unbinds a held session
+        Harness.advance(2000);
+        session.releaseIfIdle();
+        assertTrue(session.isBound());
+
+        controller.destroy();
+        Harness.idleMain();
+        assertFalse(PoiPositioningService.isRunning());
+        Harness.advance(1001);
+        assertFalse(session.isBound());
+    }
+
+    private Promise startHeadless() {
+        JavaOnlyMap options = new JavaOnlyMap();
+        options.putBoolean("headless", true);
+        options.putString("notificationTitle", "Shopping");
+        Promise promise = mock(Promise.class);
+        module.startPositioning(options, promise);
+        Harness.idleMain();
+        return promise;
+    }
+
+    private ServiceController<PoiPositioningService> startService() {
+        Intent intent = new Intent(application, PoiPositioningService.class);
+        return Robolectric.buildService(PoiPositioningService.class, intent).create().startCommand(0, 1);
+    }
+}
@@ -0,0 +1,125 @@
+package com.poilabs.harness;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Zone checks in a 5k store venue with 1k store zones: stores 5 m apart on
+ * four floors, a zone on every fifth store, and a walk across the venue
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PoiProximityEngineBenchmark {
+
+    private static final int STORES = 5000;
+    private static final int ZONES = 1000;
+    private static final int FLOORS = 4;
+    private static final int COLUMNS = 50;
+    private static final double SPACING_METERS = 5;
+    private static final int WALK_FIXES = 10000;
+
+    private final PoiProximityEngine engine = PoiProximityEngine.getInstance();
+    private PoiStoreCatalog catalog;
+    private JavaOnlyArray zones;
+    private double[] walkLatitudes;
+    private double[] walkLongitudes;
+
+    @Before
+    public void setUp() {
+        Benchmark.assumeEnabled();
+        Harness.reset();
+        ReactApplicationContext context = mock(ReactApplicationContext.class);
+        when(context.hasActiveReactInstance()).thenReturn(true);
+        when(context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)).thenReturn(
+                mock(DeviceEventManagerModule.RCTDeviceEventEmitter.class));
+        engine.setReactContext(context);
+
+        List<PoiStoreCatalog.Store> stores = new ArrayList<PoiStoreCatalog.Store>(STORES);
+        zones = new JavaOnlyArray();
+        int storesPerFloor = STORES / FLOORS;
+        for (int i = 0; i < STORES; i++) {
+            int onFloor = i % storesPerFloor;
+            String storeId = "store-" + i;
+            stores.add(new PoiStoreCatalog.Store(storeId, "Store " + i, null, String.valueOf(i / storesPerFloor),
+                    PoiProximityEngineTest.north((onFloor / COLUMNS) * SPACING_METERS),
+                    PoiProximityEngineTest.east((onFloor % COLUMNS) * SPACING_METERS)));
+            if (i % (STORES / ZONES) == 0) {
+                JavaOnlyMap zone = new JavaOnlyMap();
+                zone.putString("id", "zone-" + i);
+                zone.putString("storeId", storeId);
+                zone.putDouble("radius", 8);
+                zone.putDouble("dwellMs", 30000);
+                zones.pushMap(zone);
+            }
+        }
+        catalog = PoiStoreCatalog.getInstance(RuntimeEnvironment.getApplication(), Harness.APPLICATION_ID,
+                "proximity-benchmark");
+        catalog.update(stores);
+        assertEquals(ZONES, engine.addZones(zones, catalog));
+
+        // Back and forth along the rows of a floor, one fix per 0.5 m
+        double width = (COLUMNS - 1) * SPACING_METERS;
+        double depth = (storesPerFloor / COLUMNS) * SPACING_METERS;
+        walkLatitudes = new double[WALK_FIXES];
+        walkLongitudes = new double[WALK_FIXES];
+        for (int i = 0; i < WALK_FIXES; i++) {
+            double along = (i * 0.5) % (2 * width);
+            double row = ((i * 0.5) / (2 * width) * 2 * SPACING_METERS) % depth;
+            walkLatitudes[i] = PoiProximityEngineTest.north(row);
+            walkLongitudes[i] = PoiProximityEngineTest.east(along <= width ? along : 2 * width - along);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        Harness.advance(PoiProximityEngine.BATCH_INTERVAL_MS);
+        Harness.reset();
+    }
+
+    @Test
+    public void evaluation() {
+        engine.resetStats();
+        Benchmark.run("onPosition, " + ZONES + " zones, walking", WALK_FIXES, new Benchmark.Operation() {
+            @Override
+            public Object run(int index) {
+                engine.onPosition(walkLatitudes[index], walkLongitudes[index], "0", index * 500L);
+                // Flush every 50 fixes, well before the pending event limit
+                if (index % 50 == 49) {
+                    Harness.advance(PoiProximityEngine.BATCH_INTERVAL_MS);
+                }
+                return null;
+            }
+        });
+        ReadableMap stats = engine.getStats();
+        System.out.println(String.format(Locale.US, "%-48s %8.2f candidates per fix, %.0f events, %.0f dropped",
+                "grid lookup", stats.getDouble("averageCandidates"), stats.getDouble("emitted"),
+                stats.getDouble("dropped")));
+    }
+
+    @Test
+    public void registration() {
+        Benchmark.run("addZones " + ZONES + " store zones", 50, new Benchmark.Operation() {
+            @Override
+            public Object run(int index) {
+                return engine.addZones(zones, catalog);
+            }
+        });
+    }
+}
@@ -0,0 +1,194 @@
+package com.poilabs.harness;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class PoiProximityEngineTest {
+
+    static final double LATITUDE = 41.0;
+    static final double LONGITUDE = 29.0;
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * 6371000.0;
+
+    private final PoiProximityEngine engine = PoiProximityEngine.getInstance();
+    private DeviceEventManagerModule.RCTDeviceEventEmitter emitter;
+
+    @Before
+    public void setUp() {
+        Harness.reset();
+        ReactApplicationContext context = mock(ReactApplicationContext.class);
+        emitter = mock(DeviceEventManagerModule.RCTDeviceEventEmitter.class);
+        when(context.hasActiveReactInstance()).thenReturn(true);
+        when(context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)).thenReturn(emitter);
+        engine.setReactContext(context);
+    }
+
+    @After
+    public void tearDown() {
+        // Run a pending flush, the looper is reset between tests
+        Harness.advance(PoiProximityEngine.BATCH_INTERVAL_MS);
+        Harness.reset();
+    }
+
+    @Test
+    public void enterDwellAndExitAreTimedByTheFixes() {
+        engine.addZones(zones(pointZone("gate", 0, 0, "0", 10, 5000)), null);
+
+        engine.onPosition(LATITUDE, LONGITUDE, "0", 1000);
+        engine.onPosition(north(3), LONGITUDE, "0", 5999);
+        engine.onPosition(north(3), LONGITUDE, "0", 6000);
+        engine.onPosition(north(3), LONGITUDE, "0", 9000);
+        engine.onPosition(north(15), LONGITUDE, "0", 10000);
+
+        List<ReadableMap> events = events();
+        assertEquals(Arrays.asList("enter gate", "dwell gate", "exit gate"), describe(events));
+        assertEquals(1000, events.get(0).getDouble("timestamp"), 0);
+        assertEquals(6000, events.get(1).getDouble("timestamp"), 0);
+        assertEquals(5000, events.get(1).getDouble("dwellMs"), 0);
+        assertEquals(10000, events.get(2).getDouble("timestamp"), 0);
+    }
+
+    @Test
+    public void exitWaitsForTheMargin() {
+        engine.addZones(zones(pointZone("gate", 0, 0, "0", 10, 0)), null);
+
+        engine.onPosition(LATITUDE, LONGITUDE, "0", 0);
+        // Outside the radius, within the margin: a fix on the border does not flap
+        engine.onPosition(north(11), LONGITUDE, "0", 1000);
+        engine.onPosition(north(9), LONGITUDE, "0", 2000);
+        engine.onPosition(north(13), LONGITUDE, "0", 3000);
+
+        assertEquals(Arrays.asList("enter gate", "exit gate"), describe(events()));
+    }
+
+    @Test
+    public void zonesOnlyMatchTheirFloor() {
+        engine.addZones(zones(pointZone("upstairs", 0, 0, "1", 10, 0), pointZone("atrium", 0, 0, null, 10, 0)),
+                null);
+
+        engine.onPosition(LATITUDE, LONGITUDE, "0", 0);
+        engine.onPosition(LATITUDE, LONGITUDE, "1", 1000);
+        engine.onPosition(LATITUDE, LONGITUDE, "0", 2000);
+
+        assertEquals(Arrays.asList("enter atrium", "enter upstairs", "exit upstairs"), describe(events()));
+    }
+
+    @Test
+    public void replayStartingOverRestartsTheDwell() {
+        engine.addZones(zones(pointZone("gate", 0, 0, "0", 10, 5000)), null);
+
+        engine.onPosition(LATITUDE, LONGITUDE, "0", 10000);
+        engine.onPosition(LATITUDE, LONGITUDE, "0", 0);
+        engine.onPosition(LATITUDE, LONGITUDE, "0", 4999);
+        engine.onPosition(LATITUDE, LONGITUDE, "0", 5000);
+
+        List<ReadableMap> events = events();
+        assertEquals(Arrays.asList("enter gate", "dwell gate"), describe(events));
+        assertEquals(5000, events.get(1).getDouble("timestamp"), 0);
+    }
+
+    @Test
+    public void storeZonesTakeTheirLocationFromTheCatalog() {
+        PoiStoreCatalog catalog = PoiStoreCatalog.getInstance(RuntimeEnvironment.getApplication(),
+                Harness.APPLICATION_ID, "proximity");
+        catalog.update(Arrays.asList(
+                new PoiStoreCatalog.Store("located", "Located", null, "0", north(20), LONGITUDE),
+                new PoiStoreCatalog.Store("placeholder", "Placeholder", null, "0", 0, 0)));
+        JavaOnlyMap locatedZone = new JavaOnlyMap();
+        locatedZone.putString("id", "store");
+        locatedZone.putString("storeId", "located");
+        JavaOnlyMap placeholderZone = new JavaOnlyMap();
+        placeholderZone.putString("id", "nowhere");
+        placeholderZone.putString("storeId", "placeholder");
+
+        assertEquals(2, engine.addZones(zones(locatedZone, placeholderZone), catalog));
+        assertEquals(1, engine.getStats().getInt("unresolvedZones"));
+
+        // A fix at 0/0 is not a position either
+        engine.onPosition(0, 0, "0", 0);
+        engine.onPosition(north(20), LONGITUDE, "0", 1000);
+
+        List<ReadableMap> events = events();
+        assertEquals(Collections.singletonList("enter store"), describe(events));
+        assertEquals("located", events.get(0).getString("storeId"));
+    }
+
+    static double north(double meters) {
+        return LATITUDE + meters / METERS_PER_DEGREE;
+    }
+
+    static double east(double meters) {
+        return LONGITUDE + meters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(LATITUDE)));
+    }
+
+    static JavaOnlyMap pointZone(String id, double northMeters, double eastMeters, String floor, double radius,
+            long dwellMs) {
+        JavaOnlyMap zone = new JavaOnlyMap();
+        zone.putString("id", id);
+        zone.putDouble("latitude", north(northMeters));
+        zone.putDouble("longitude", east(eastMeters));
+        if (floor != null) {
+            zone.putString("floor", floor);
+        }
+        zone.putDouble("radius", radius);
+        zone.putDouble("dwellMs", dwellMs);
+        return zone;
+    }
+
+    static JavaOnlyArray zones(JavaOnlyMap... zones) {
+        JavaOnlyArray array = new JavaOnlyArray();
+        for (JavaOnlyMap zone : zones) {
+            array.pushMap(zone);
+        }
+        return array;
+    }
+
+    /**
+     * Every event sent so far, in order, over however many batches
+     */
+    private List<ReadableMap> events() {
+        Harness.advance(PoiProximityEngine.BATCH_INTERVAL_MS);
+        ArgumentCaptor<Object> batches = ArgumentCaptor.forClass(Object.class);
+        verify(emitter, atLeast(0)).emit(eq(PoiProximityEngine.EVENT_NAME), batches.capture());
+        List<ReadableMap> events = new ArrayList<ReadableMap>();
+        for (Object batch : batches.getAllValues()) {
+            ReadableArray array = (ReadableArray) batch;
+            for (int i = 0; i < array.size(); i++) {
+                events.add(array.getMap(i));
+            }
+        }
+        return events;
+    }
+
+    private static List<String> describe(List<ReadableMap> events) {
+        List<String> descriptions = new ArrayList<String>();
+        for (ReadableMap event : events) {
+            descriptions.add(event.getString("type") + " " + event.getString("zoneId"));
+        }
+        return descriptions;
+    }
+}
@@ -0,0 +1,121 @@
+package com.poilabs.harness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Name search over a 5k store venue, against a scan normalizing every name
+ * as searching did without the token index
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PoiStoreCatalogBenchmark {
+
+    private static final int STORES = 5000;
+    private static final String[] BRANDS = { "Kahve Dünyası", "Starbucks", "Mavi", "LC Waikiki", "Koton",
+            "Boyner", "Şok Market", "Migros", "Apple Store", "Zara", "Decathlon", "Mado", "İş Bankası" };
+    private static final String[] QUERIES = { "s", "star", "kahve dun", "is bank", "migros 12", "nothing" };
+
+    private final List<PoiStoreCatalog.Store> stores = new ArrayList<PoiStoreCatalog.Store>();
+    private PoiStoreCatalog catalog;
+
+    @Before
+    public void setUp() {
+        Benchmark.assumeEnabled();
+        for (int i = 0; i < STORES; i++) {
+            String name = BRANDS[i % BRANDS.length] + " " + (i / BRANDS.length);
+            stores.add(new PoiStoreCatalog.Store("store-" + i, name, "category-" + (i % 20),
+                    String.valueOf(i % 4), 41.0 + i * 1e-6, 29.0 + i * 1e-6));
+        }
+        catalog = PoiStoreCatalog.getInstance(RuntimeEnvironment.getApplication(), Harness.APPLICATION_ID,
+                "benchmark-" + STORES);
+        assertEquals(STORES, catalog.update(stores));
+    }
+
+    @Test
+    public void index() {
+        Benchmark.run("update " + STORES + " stores", 20, new Benchmark.Operation() {
+            @Override
+            public Object run(int index) {
+                return catalog.update(stores);
+            }
+        });
+    }
+
+    @Test
+    public void search() {
+        assertTrue(catalog.search("kahve dun", 20).size() > 0);
+        for (final String query : QUERIES) {
+            Benchmark.run("search \"" + query + "\" in " + STORES, 2000, new Benchmark.Operation() {
+                @Override
+                public Object run(int index) {
+                    return catalog.search(query, 20);
+                }
+            });
+            Benchmark.run("scan \"" + query + "\" in " + STORES, 20, new Benchmark.Operation() {
+                @Override
+                public Object run(int index) {
+                    return scan(query, 20);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void indexedSearchMatchesTheScan() {
+        for (String query : QUERIES) {
+            List<String> indexed = new ArrayList<String>();
+            WritableArray results = catalog.search(query, STORES);
+            for (int i = 0; i < results.size(); i++) {
+                ReadableMap store = results.getMap(i);
+                indexed.add(store.getString("id"));
+            }
+            List<String> scanned = scan(query, STORES);
+            assertEquals(query, scanned.size(), indexed.size());
+            assertTrue(query, indexed.containsAll(scanned));
+        }
+    }
+
+    /**
+     * Stores with a name token starting with every query token, found by normalizing every name
+     */
+    private List<String> scan(String query, int limit) {
+        String[] queryTokens = PoiStoreCatalog.tokenize(query);
+        List<String> results = new ArrayList<String>();
+        for (PoiStoreCatalog.Store store : stores) {
+            if (results.size() >= limit) {
+                break;
+            }
+            String[] nameTokens = PoiStoreCatalog.tokenize(store.name);
+            boolean matches = queryTokens.length > 0;
+            for (String queryToken : queryTokens) {
+                boolean found = false;
+                for (String nameToken : nameTokens) {
+                    if (nameToken.startsWith(queryToken)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                results.add(store.id);
+            }
+        }
+        return results;
+    }
+}
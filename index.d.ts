@@ -1,4 +1,4 @@
-import { ComponentType } from "react";
+import React, { ComponentType } from "react";
 import { ViewProps } from "react-native";
 
 export interface PoiMapViewProps extends ViewProps {
@@ -14,25 +14,421 @@ export interface InitConfig {
   applicationId: string;
   applicationSecret: string;
   uniqueId: string;
+  language?: string;
+}
+
+export interface PrefetchOptions {
+  /** Skip the prefetch if the venue was fetched within this time, 24 hours by default */
+  maxAgeMs?: number;
+  /** Skip the prefetch when less storage is free, 50 MB by default */
+  minFreeBytes?: number;
+  /** Wait for an unmetered network instead of any connection */
+  unmeteredOnly?: boolean;
 }
 
 export interface PluginConfig {
   mapboxToken?: string;
   jitpackToken?: string;
+  /** Add a Baseline Profile listing the map startup classes (Android), false by default. Its effect is not measured. */
+  baselineProfile?: boolean;
+  /** Add R8 keep rules for the plugin and SDK (Android), true by default */
+  proguardRules?: boolean;
+  /** Declare the headless positioning foreground service and its permissions (Android), false by default */
+  headlessPositioning?: boolean;
+}
+
+export interface RestartMapOptions {
+  /**
+   * Both modes restart the SDK in full. "incremental" shows the current route
+   * and highlight again once the stores reload, and skips the restart when the
+   * language is already loaded. "full" starts over like a fresh map.
+   */
+  mode?: "incremental" | "full";
+}
+
+export interface RestartMapResult {
+  mode: "incremental" | "full";
+  /** false when an incremental restart was skipped because the language was already loaded */
+  reloaded: boolean;
+  durationMs: number;
+}
+
+export interface StatusEvent {
+  type: "status";
+  /** PLPStatus reported by the SDK */
+  status: string;
+  timestamp: number;
+}
+
+export interface ErrorEvent {
+  type: "error";
+  message: string;
+  timestamp: number;
+}
+
+export interface EventSubscription {
+  remove(): void;
+}
+
+export interface EventStats {
+  received: number;
+  emitted: number;
+  coalesced: number;
+  dropped: number;
+  batches: number;
+  statusWindowMs: number;
+}
+
+export interface LatencyHistogram {
+  count: number;
+  minMs: number;
+  maxMs: number;
+  meanMs: number;
+  /** Quantiles are the upper bound of the bucket they fall in */
+  p50Ms: number;
+  p90Ms: number;
+  p99Ms: number;
+  /** leMs is null for the last, unbounded bucket */
+  buckets: { leMs: number | null; count: number }[];
+}
+
+export interface Metrics {
+  /** Permission prompt shown until answered */
+  permission: LatencyHistogram;
+  /** SDK bind until the MapFragment is ready */
+  timeToMap: LatencyHistogram;
+  /** MapFragment ready until its transaction is committed */
+  mapCommit: LatencyHistogram;
+  /** SDK bind until the stores are ready */
+  timeToStoresReady: LatencyHistogram;
+  /** Map view attach until the first frame with the map */
+  firstFrame: LatencyHistogram;
+  /** Command sent until the map starts running it */
+  commandQueue: LatencyHistogram;
+  /** Time spent in the SDK call of a command */
+  commandExecute: LatencyHistogram;
+  /** SDK configuration and instance setup, on a background thread */
+  setupPrepare: LatencyHistogram;
+  /** Wait for the main thread after the background setup */
+  setupHandOff: LatencyHistogram;
+  /** SDK bind call on the main thread */
+  setupBind: LatencyHistogram;
+  /** Map view created until its fragment transaction, one sample per fragment created */
+  viewToFragment: LatencyHistogram;
+  /** Proximity check of one position against the registered zones */
+  proximityEvaluate: LatencyHistogram;
+}
+
+export interface Position {
+  latitude: number;
+  longitude: number;
+  /** Meters, 0 if unknown */
+  accuracy: number;
+  /** Milliseconds since the epoch */
+  timestamp: number;
+  floor: string | null;
+}
+
+export interface PositionStreamOptions {
+  /** Most positions per second sent to JS, 5 by default */
+  maxRateHz?: number;
+  /** Positions are sent in one batch per interval, 250 by default */
+  batchIntervalMs?: number;
+  /** Slow down while the user stands still, true by default */
+  adaptive?: boolean;
+  /** Movement below this counts as standing still, 1 by default */
+  stationaryMeters?: number;
+  /** Interval between positions while standing still, 2000 by default */
+  stationaryIntervalMs?: number;
+}
+
+export interface PositionStreamStats {
+  received: number;
+  accepted: number;
+  coalesced: number;
+  emitted: number;
+  dropped: number;
+  /** Bridge messages sent */
+  batches: number;
+  stationary: boolean;
+  /** Whether a source delivers positions, the app's own or a replay */
+  hasSource: boolean;
+}
+
+/** A circular zone, placed at a store of the catalog or at a point */
+export interface ProximityZone {
+  id: string;
+  /** Place the zone at this store of setStoreCatalog, on its floor */
+  storeId?: string;
+  latitude?: number;
+  longitude?: number;
+  /** Without a floor the zone applies on every floor */
+  floor?: string;
+  /** Meters, 10 by default */
+  radius?: number;
+  /** Send a dwell event once the user stayed this long, 0 (off) by default */
+  dwellMs?: number;
+}
+
+export interface ProximityOptions {
+  /** Grid cell size of the zone index, 25 by default */
+  cellSizeMeters?: number;
+  /** Extra distance beyond the radius before an exit, 2 by default */
+  exitMarginMeters?: number;
+}
+
+export interface ProximityEvent {
+  type: "enter" | "exit" | "dwell";
+  zoneId: string;
+  storeId: string | null;
+  /** Timestamp of the position fix that raised the event */
+  timestamp: number;
+  /** Time inside the zone, dwell events only */
+  dwellMs?: number;
+}
+
+export interface ProximityStats {
+  zones: number;
+  /** Store zones whose store is not in the catalog yet or has no location */
+  unresolvedZones: number;
+  floors: number;
+  cells: number;
+  inside: number;
+  evaluations: number;
+  /** Zones checked per position, besides the ones already entered */
+  averageCandidates: number;
+  averageEvaluationUs: number;
+  maxEvaluationUs: number;
+  emitted: number;
+  dropped: number;
+}
+
+export interface PositionFix {
+  latitude: number;
+  longitude: number;
+  floor?: string;
+  accuracy?: number;
+  /** Milliseconds, used for the spacing between fixes */
+  timestamp?: number;
+}
+
+/** Commands addressed to one mounted PoiMapView, available through its ref */
+export interface HighlightDelta {
+  /** New full set, applied before add and remove */
+  replace?: string[];
+  add?: string[];
+  remove?: string[];
+}
+
+export interface HighlightUpdateResult {
+  /** False when the update left the highlighted set unchanged */
+  changed: boolean;
+  /** Size of the map view's set, the largest one when sent to every map view */
+  size: number;
+  /** True when no map view was mounted yet, the update applies once one is */
+  queued: boolean;
+}
+
+export interface PoiMapViewHandle {
+  showPointOnMap(storeIds: string[]): Promise<void>;
+  updateHighlights(delta: HighlightDelta): Promise<HighlightUpdateResult>;
+  showSinglePointOnMap(storeId: string): Promise<void>;
+  getRouteTo(storeId: string): void;
+  getRouteToWithPromise(storeId: string): Promise<void>;
+}
+
+export interface MapMountStats {
+  /** Mounts that reused the retained map */
+  warmMounts: number;
+  lastWarmMountMs: number;
+  averageWarmMountMs: number;
+  /** Mounts that had to wait for a new map */
+  coldMounts: number;
+  lastColdMountMs: number;
+  averageColdMountMs: number;
+  idleReleases: number;
+  /** Retained maps released early on memory pressure */
+  memoryReleases: number;
+  /** SDK sessions released after the app stayed in the background */
+  backgroundReleases: number;
+}
+
+export interface StartPositioningOptions {
+  /**
+   * Android: keep positioning in a foreground service without a mounted PoiMapView.
+   * Needs headlessPositioning in the plugin options and location permission.
+   */
+  headless?: boolean;
+  /** Text of the ongoing notification shown while headless */
+  notificationTitle?: string;
+  notificationText?: string;
+}
+
+export interface UsageStats {
+  uptimeMs: number;
+  /** Time the device was awake, whatever woke it */
+  awakeMs: number;
+  awakeMsPerHour: number;
+  /** Process CPU time, JS included */
+  cpuMs: number;
+  cpuMsPerHour: number;
+}
+
+export interface HeadlessPositioningStats extends UsageStats {
+  running: boolean;
+  /** The same times over every period a map view was attached, to compare with */
+  map: UsageStats;
+  sdkBound: boolean;
+  /** PLPStatus updates the SDK sent during the run, 0 if it reported nothing while headless */
+  statusUpdates: number;
+  lastStatus: string | null;
+  hasPositionSource: boolean;
+  /** Why the service stopped on its own, such as a missing permission */
+  error: string | null;
+}
+
+export interface RouteRequestOptions {
+  /** Route requests within this window collapse into the last one, 150 by default */
+  debounceMs?: number;
+  /** getRouteToWithPromise rejects with ROUTE_TIMEOUT after this, 30000 by default */
+  timeoutMs?: number;
+}
+
+export interface VenueCacheOptions {
+  /** Venues kept, least recently used first out, 4 by default */
+  maxVenues?: number;
+  /** Show a venue's last route and highlights again on a map mounted without showOnMap/getRouteTo, true by default */
+  restoreState?: boolean;
+}
+
+export interface VenueCacheStats {
+  venues: number;
+  maxVenues: number;
+  evictions: number;
+  /** Maps mounted without showOnMap/getRouteTo that got their venue's route or highlights back */
+  hits: number;
+  /** Maps mounted without showOnMap/getRouteTo that found nothing to restore */
+  misses: number;
+  hitRate: number;
+  /** Changes of venue or language, timed until the new stores are ready */
+  switches: number;
+  lastSwitchMs: number;
+  averageSwitchMs: number;
+}
+
+export interface Store {
+  id: string;
+  name?: string;
+  category?: string;
+  floor?: string;
+  latitude?: number;
+  longitude?: number;
 }
 
-export const PoiMapView: ComponentType<PoiMapViewProps>;
+export const PoiMapView: ComponentType<
+  PoiMapViewProps & { ref?: React.Ref<PoiMapViewHandle> }
+>;
 export default PoiMapView;
 
 export function initNavigationSDK(config: InitConfig): Promise<boolean>;
+/** Resolves false when the venue data is still fresh and nothing was scheduled */
+export function prefetchVenue(
+  config: InitConfig,
+  options?: PrefetchOptions
+): Promise<boolean>;
+/** Cancels queued prefetches, deletes their stored secrets and forgets which venues were fetched. */
+export function clearPrefetchState(): void;
 export function getReadyForStoreMap(): Promise<boolean>;
-export function showPointOnMap(storeIds: string[]): Promise<void>;
-export function showSinglePointOnMap(storeId: string): Promise<void>;
-export function getRouteTo(storeId: string): Promise<void>;
-export function getRouteToWithPromise(storeId: string): Promise<void>;
-export function startPositioning(): Promise<boolean>;
+export function showPointOnMap(
+  storeIds: string[],
+  viewTag?: number
+): Promise<void>;
+export function updateHighlights(
+  delta: HighlightDelta,
+  viewTag?: number
+): Promise<HighlightUpdateResult>;
+export function showSinglePointOnMap(
+  storeId: string,
+  viewTag?: number
+): Promise<void>;
+export function getRouteTo(storeId: string, viewTag?: number): Promise<void>;
+export function getRouteToWithPromise(
+  storeId: string,
+  viewTag?: number
+): Promise<void>;
+export function configureRouteRequests(options: RouteRequestOptions): void;
+/** Rejects with HEADLESS_ERROR when headless is set before initNavigationSDK */
+export function startPositioning(
+  options?: StartPositioningOptions | null
+): Promise<boolean>;
+/**
+ * Also stops headless positioning. On Android the SDK has no scan toggle, so
+ * this unbinds the SDK, also from mounted map views, until startPositioning.
+ * Resolves true once it stopped.
+ */
 export function stopPositioning(): Promise<boolean>;
-export function restartMap(language: string): Promise<void>;
+/** Android only, resolves null on iOS */
+export function getHeadlessPositioningStats(): Promise<HeadlessPositioningStats | null>;
+export function restartMap(
+  language: string,
+  options?: RestartMapOptions
+): Promise<RestartMapResult>;
+
+export function setMapIdleTimeout(timeoutMs: number): void;
+export function setBackgroundGracePeriod(gracePeriodMs: number): void;
+export function getMapMountStats(): Promise<MapMountStats>;
+export function configureVenueCache(options: VenueCacheOptions): void;
+export function getVenueCacheStats(): Promise<VenueCacheStats>;
+
+export function addStatusListener(
+  listener: (event: StatusEvent) => void
+): EventSubscription;
+export function addErrorListener(
+  listener: (event: ErrorEvent) => void
+): EventSubscription;
+export function addPositionListener(
+  listener: (positions: Position[]) => void
+): EventSubscription;
+export function configurePositionStream(options: PositionStreamOptions): void;
+export function getPositionStreamStats(): Promise<PositionStreamStats>;
+export function resetPositionStreamStats(): void;
+export function replayPositions(
+  fixes: PositionFix[],
+  options?: { speed?: number }
+): Promise<{ count: number; durationMs: number }>;
+export function stopPositionReplay(): void;
+
+/** Resolves with the number of zones added, zones with an existing id are replaced */
+export function addProximityZones(zones: ProximityZone[]): Promise<number>;
+export function removeProximityZones(zoneIds: string[]): void;
+export function clearProximityZones(): void;
+export function configureProximity(options: ProximityOptions): void;
+export function addProximityListener(
+  listener: (event: ProximityEvent) => void
+): EventSubscription;
+export function getProximityStats(): Promise<ProximityStats>;
+export function resetProximityStats(): void;
+
+export function setStatusCoalescingWindow(windowMs: number): void;
+export function getEventStats(): Promise<EventStats>;
+export function resetEventStats(): void;
+
+export function getMetrics(): Promise<Metrics>;
+export function resetMetrics(): void;
+
+/** Replace the native store catalog of the current venue, resolves with the number of stores kept. Rejects before a venue is started. */
+export function setStoreCatalog(stores: Store[]): Promise<number>;
+export function searchStores(query: string, limit?: number): Promise<Store[]>;
+export function getStore(storeId: string): Promise<Store | null>;
+
+/** Synchronous native call */
+export function isStoresReady(): boolean;
+/** Last PLPStatus reported by the SDK, synchronous native call */
+export function getPositioningStatus(): string | null;
+/** True while location permission is missing, so the SDK cannot position (Android). Reporting only, the map is not changed. */
+export function isBrowseOnly(): boolean;
+/** True while the position stream has a source, the app's own or a replay (Android) */
+export function hasPositionSource(): boolean;
 
 export function askRuntimePermissionsIfNeeded(): Promise<boolean>;
 export function checkAllPermissions(): Promise<boolean>;
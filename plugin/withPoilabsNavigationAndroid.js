@@ -17,20 +17,137 @@ const ANDROID_PERMISSIONS = [
   "android.permission.BLUETOOTH_ADMIN",
 ];
 
+// Only added with headlessPositioning, for the foreground service
+const HEADLESS_PERMISSIONS = [
+  "android.permission.FOREGROUND_SERVICE",
+  "android.permission.FOREGROUND_SERVICE_LOCATION",
+];
+
 const ANDROID_RESOURCES = [
   {
     source: "fragment_poi_map.xml",
     destination: "layout/fragment_poi_map.xml",
   },
+  {
+    source: "ic_poilabs_positioning.xml",
+    destination: "drawable/ic_poilabs_positioning.xml",
+  },
 ];
 
 const ANDROID_MODULE_FILES = [
+  "PoiAppLifecycle.java",
+  "PoiCredentialStore.java",
+  "PoiEventStream.java",
+  "PoiHighlightSet.java",
+  "PoiMapCommand.java",
+  "PoiMapCommandBus.java",
+  "PoiMapCommandQueue.java",
+  "PoiMapContainerView.java",
   "PoiMapFragment.java",
   "PoiMapModule.java",
   "PoiMapViewManager.java",
+  "PoiMapViewState.java",
+  "PoiMemoryTrimmer.java",
+  "PoiMetrics.java",
   "PoilabsPackage.java",
+  "PoiPositioningController.java",
+  "PoiPositioningService.java",
+  "PoiPositionReplaySource.java",
+  "PoiPositionStream.java",
+  "PoiProximityEngine.java",
+  "PoiRouteScheduler.java",
+  "PoiStoreCatalog.java",
+  "PoiUsageMeter.java",
+  "PoiVenueCache.java",
+  "PoiVenuePrefetchWorker.java",
+  "PoiNavigationSession.java",
+];
+
+// Marks the sections this plugin owns in files shared with the app
+const SECTION_BEGIN = "# @poilabs-dev/navigation-sdk-plugin begin";
+const SECTION_END = "# @poilabs-dev/navigation-sdk-plugin end";
+
+// Classes on the map screen startup path: plugin classes and the SDK they drive
+const BASELINE_PROFILE_RULES = (packagePath) => [
+  `HSPL${packagePath}/PoilabsPackage;->**(**)**`,
+  `HSPL${packagePath}/PoiMapModule;->**(**)**`,
+  `HSPL${packagePath}/PoiMapViewManager;->**(**)**`,
+  `HSPL${packagePath}/PoiMapViewState;->**(**)**`,
+  `HSPL${packagePath}/PoiMapContainerView;->**(**)**`,
+  `HSPL${packagePath}/PoiMapFragment;->**(**)**`,
+  `HSPL${packagePath}/PoiMapFragment$*;->**(**)**`,
+  `HSPL${packagePath}/PoiNavigationSession;->**(**)**`,
+  `HSPL${packagePath}/PoiNavigationSession$*;->**(**)**`,
+  `HSPL${packagePath}/PoiMapCommand*;->**(**)**`,
+  `HSPL${packagePath}/PoiPositioningController;->**(**)**`,
+  `HSPL${packagePath}/PoiEventStream;->**(**)**`,
+  `HSPL${packagePath}/PoiMetrics*;->**(**)**`,
+  "HSPLcom/poilabs/navigation/**;->**(**)**",
+  "HSPLcom/poilabs/poilabspositioning/**;->**(**)**",
+  `L${packagePath}/Poi*;`,
+  "Lcom/poilabs/navigation/**;",
+  "Lcom/poilabs/poilabspositioning/**;",
+];
+
+const PROGUARD_RULES = (packageName) => [
+  // Fragments are recreated by class name after process death
+  `-keep public class ${packageName}.PoiMapFragment { public <init>(); }`,
+  "-keep public class com.poilabs.navigation.view.fragments.MapFragment { public <init>(); }",
+  // Callback interfaces and models the SDK passes across its API
+  "-keep class com.poilabs.navigation.model.** { *; }",
+  "-keep class com.poilabs.poilabspositioning.model.** { *; }",
+  `-keep class ${packageName}.PoiVenuePrefetchWorker { public <init>(android.content.Context, androidx.work.WorkerParameters); }`,
 ];
 
+function getAndroidPackageName(config) {
+  return (
+    config.android?.package ||
+    config.android?.packageName ||
+    `com.${config.slug}`
+  );
+}
+
+/**
+ * Replace the plugin's section in a file, or append it
+ */
+function writeSection(filePath, lines) {
+  let content = fs.existsSync(filePath) ? fs.readFileSync(filePath, "utf8") : "";
+  const section = [SECTION_BEGIN, ...lines, SECTION_END].join("\n");
+  const pattern = new RegExp(
+    `${escapeRegExp(SECTION_BEGIN)}[\\s\\S]*?${escapeRegExp(SECTION_END)}`
+  );
+
+  if (pattern.test(content)) {
+    content = content.replace(pattern, section);
+  } else {
+    content += (content && !content.endsWith("\n") ? "\n" : "") + section + "\n";
+  }
+  fs.writeFileSync(filePath, content, "utf8");
+}
+
+function removeSection(filePath) {
+  if (!fs.existsSync(filePath)) {
+    return;
+  }
+  const pattern = new RegExp(
+    `\\n?${escapeRegExp(SECTION_BEGIN)}[\\s\\S]*?${escapeRegExp(SECTION_END)}\\n?`
+  );
+  const content = fs.readFileSync(filePath, "utf8");
+  if (!pattern.test(content)) {
+    return;
+  }
+  const remaining = content.replace(pattern, "\n");
+  if (remaining.trim()) {
+    fs.writeFileSync(filePath, remaining, "utf8");
+  } else {
+    fs.unlinkSync(filePath);
+  }
+}
+
+function escapeRegExp(text) {
+  return text.replace(/[.*+?^${}()|[\]\\]/g, "\\$&");
+}
+
 function addProjectRepositories(config, { mapboxToken, jitpackToken }) {
   return withDangerousMod(config, [
     "android",
@@ -82,7 +199,7 @@ function addProjectRepositories(config, { mapboxToken, jitpackToken }) {
   ]);
 }
 
-function addAppGradleSettings(config) {
+function addAppGradleSettings(config, { baselineProfile }) {
   return withDangerousMod(config, [
     "android",
     async (modConfig) => {
@@ -138,9 +255,17 @@ function addAppGradleSettings(config) {
       const dependencies = [
         "implementation 'androidx.multidex:multidex:2.0.1'",
         "implementation 'com.github.poiteam:Android-Navigation-SDK:4.4.1'",
-        "implementation 'androidx.localbroadcastmanager:localbroadcastmanager:1.1.0'",
         "implementation 'androidx.fragment:fragment:1.6.2'",
+        "implementation 'androidx.tracing:tracing:1.2.0'",
+        "implementation 'androidx.work:work-runtime:2.9.0'",
+        "implementation 'androidx.lifecycle:lifecycle-process:2.6.2'",
       ];
+      if (baselineProfile) {
+        // Installs the profile on devices that did not get it from Play
+        dependencies.push(
+          "implementation 'androidx.profileinstaller:profileinstaller:1.3.1'"
+        );
+      }
 
       dependencies.forEach((dep) => {
         if (!text.includes(dep)) {
@@ -154,7 +279,7 @@ function addAppGradleSettings(config) {
   ]);
 }
 
-function addAndroidPermissions(config) {
+function addAndroidPermissions(config, { headlessPositioning }) {
   return withAndroidManifest(config, (mod) => {
     const { manifest } = mod.modResults;
 
@@ -162,7 +287,10 @@ function addAndroidPermissions(config) {
       manifest["uses-permission"] = [];
     }
 
-    ANDROID_PERMISSIONS.forEach((permission) => {
+    const permissions = headlessPositioning
+      ? [...ANDROID_PERMISSIONS, ...HEADLESS_PERMISSIONS]
+      : ANDROID_PERMISSIONS;
+    permissions.forEach((permission) => {
       const exists = manifest["uses-permission"].some(
         (p) => p["$"]["android:name"] === permission
       );
@@ -174,6 +302,32 @@ function addAndroidPermissions(config) {
       }
     });
 
+    // Foreground service for headless positioning, removed again when turned off
+    const application = manifest.application && manifest.application[0];
+    if (application) {
+      const serviceName = `${getAndroidPackageName(config)}.PoiPositioningService`;
+      if (!application.service) {
+        application.service = [];
+      }
+      if (!headlessPositioning) {
+        application.service = application.service.filter(
+          (s) => s["$"]["android:name"] !== serviceName
+        );
+      }
+      const exists = application.service.some(
+        (s) => s["$"]["android:name"] === serviceName
+      );
+      if (headlessPositioning && !exists) {
+        application.service.push({
+          $: {
+            "android:name": serviceName,
+            "android:exported": "false",
+            "android:foregroundServiceType": "location",
+          },
+        });
+      }
+    }
+
     return mod;
   });
 }
@@ -184,33 +338,53 @@ function addAndroidResources(config) {
     async (modConfig) => {
       const root = modConfig.modRequest.projectRoot;
       const resDir = path.join(root, "android/app/src/main/res");
+      const templateDir = path.join(__dirname, "..", "src", "android");
 
       ANDROID_RESOURCES.forEach((resource) => {
-        const destDir = path.dirname(path.join(resDir, resource.destination));
+        const destFile = path.join(resDir, resource.destination);
+        const destDir = path.dirname(destFile);
         if (!fs.existsSync(destDir)) {
           fs.mkdirSync(destDir, { recursive: true });
         }
+        fs.copyFileSync(path.join(templateDir, resource.source), destFile);
       });
 
-      const layoutDir = path.join(resDir, "layout");
-      if (!fs.existsSync(layoutDir)) {
-        fs.mkdirSync(layoutDir, { recursive: true });
-      }
+      return modConfig;
+    },
+  ]);
+}
 
-      const fragmentLayoutContent = `<?xml version="1.0" encoding="utf-8"?>
-<FrameLayout xmlns:android="http://schemas.android.com/apk/res/android"
-    android:layout_width="match_parent"
-    android:layout_height="match_parent">
+function addStartupOptimizations(config, { baselineProfile, proguardRules }) {
+  return withDangerousMod(config, [
+    "android",
+    async (modConfig) => {
+      const root = modConfig.modRequest.projectRoot;
+      const appDir = path.join(root, "android/app");
 
-    <FrameLayout
-        android:id="@+id/mapLayout"
-        android:layout_width="match_parent"
-        android:layout_height="match_parent" />
+      if (!fs.existsSync(appDir)) {
+        console.warn("android/app not found, skipping startup optimizations");
+        return modConfig;
+      }
 
-</FrameLayout>`;
+      const packageName = getAndroidPackageName(config);
+      const profilePath = path.join(appDir, "src/main/baseline-prof.txt");
+      const rulesPath = path.join(appDir, "proguard-rules.pro");
 
-      const fragmentLayoutPath = path.join(layoutDir, "fragment_poi_map.xml");
-      fs.writeFileSync(fragmentLayoutPath, fragmentLayoutContent, "utf8");
+      if (baselineProfile) {
+        fs.mkdirSync(path.dirname(profilePath), { recursive: true });
+        writeSection(
+          profilePath,
+          BASELINE_PROFILE_RULES(packageName.replace(/\./g, "/"))
+        );
+      } else {
+        removeSection(profilePath);
+      }
+
+      if (proguardRules) {
+        writeSection(rulesPath, PROGUARD_RULES(packageName));
+      } else {
+        removeSection(rulesPath);
+      }
 
       return modConfig;
     },
@@ -222,10 +396,7 @@ function addAndroidNativeModules(config) {
     "android",
     async (modConfig) => {
       const root = modConfig.modRequest.projectRoot;
-      const packageName =
-        config.android?.package ||
-        config.android?.packageName ||
-        `com.${config.slug}`;
+      const packageName = getAndroidPackageName(config);
 
       const packagePath = packageName.replace(/\./g, "/");
       const srcDir = path.join(root, "android/app/src/main/java", packagePath);
@@ -329,14 +500,20 @@ function addAndroidProperties(config) {
 }
 
 function withPoilabsNavigationAndroid(config, props = {}) {
-  const { mapboxToken = "MAPBOX_TOKEN", jitpackToken = "JITPACK_TOKEN" } =
-    props;
+  const {
+    mapboxToken = "MAPBOX_TOKEN",
+    jitpackToken = "JITPACK_TOKEN",
+    baselineProfile = false,
+    proguardRules = true,
+    headlessPositioning = false,
+  } = props;
 
   config = addProjectRepositories(config, { mapboxToken, jitpackToken });
-  config = addAppGradleSettings(config);
-  config = addAndroidPermissions(config);
+  config = addAppGradleSettings(config, { baselineProfile });
+  config = addAndroidPermissions(config, { headlessPositioning });
   config = addAndroidResources(config);
   config = addAndroidNativeModules(config);
+  config = addStartupOptimizations(config, { baselineProfile, proguardRules });
   config = addAndroidProperties(config);
 
   return config;
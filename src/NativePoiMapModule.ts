@@ -0,0 +1,80 @@
+import type { TurboModule } from "react-native";
+import { TurboModuleRegistry } from "react-native";
+import type { Int32 } from "react-native/Libraries/Types/CodegenTypes";
+
+export interface Spec extends TurboModule {
+  initNavigationSDK(
+    applicationId: string,
+    applicationSecret: string,
+    uniqueId: string,
+    language: string
+  ): Promise<boolean>;
+  getReadyForStoreMap(): Promise<boolean>;
+  showPointOnMap(storeIds: string[], viewTag: Int32): void;
+  updateHighlights(
+    replace: string[] | null,
+    add: string[] | null,
+    remove: string[] | null,
+    viewTag: Int32
+  ): Promise<Object>;
+  showSinglePointOnMap(storeId: string, viewTag: Int32): Promise<void>;
+  getRouteTo(storeId: string, viewTag: Int32): void;
+  getRouteToWithPromise(storeId: string, viewTag: Int32): Promise<void>;
+  configureRouteRequests(debounceMs: number, timeoutMs: number): void;
+  startPositioning(options: Object | null): Promise<boolean>;
+  stopPositioning(): Promise<boolean>;
+  getHeadlessPositioningStats(): Promise<Object>;
+  restartMap(language: string, mode: string): Promise<Object>;
+  setStatusCoalescingWindow(windowMs: number): void;
+  getEventStats(): Promise<Object>;
+  resetEventStats(): void;
+  prefetchVenue(
+    applicationId: string,
+    applicationSecret: string,
+    uniqueId: string,
+    language: string,
+    maxAgeMs: number,
+    minFreeBytes: number,
+    unmeteredOnly: boolean
+  ): Promise<boolean>;
+  clearPrefetchState(): void;
+  setPositionStreamEnabled(enabled: boolean): void;
+  configurePositionStream(
+    maxRateHz: number,
+    batchIntervalMs: number,
+    adaptive: boolean,
+    stationaryMeters: number,
+    stationaryIntervalMs: number
+  ): void;
+  getPositionStreamStats(): Promise<Object>;
+  resetPositionStreamStats(): void;
+  replayPositions(fixes: Object[], speed: number): Promise<Object>;
+  stopPositionReplay(): void;
+  addProximityZones(zones: Object[]): Promise<number>;
+  removeProximityZones(zoneIds: string[]): void;
+  clearProximityZones(): void;
+  configureProximity(cellSizeMeters: number, exitMarginMeters: number): void;
+  getProximityStats(): Promise<Object>;
+  resetProximityStats(): void;
+  getMetrics(): Promise<Object>;
+  resetMetrics(): void;
+  setMapIdleTimeout(timeoutMs: number): void;
+  setBackgroundGracePeriod(gracePeriodMs: number): void;
+  getMapMountStats(): Promise<Object>;
+  configureVenueCache(maxVenues: number, restoreState: boolean): void;
+  getVenueCacheStats(): Promise<Object>;
+  setStoreCatalog(stores: Object[]): Promise<number>;
+  searchStores(query: string, limit: Int32): Promise<Object[]>;
+  getStore(storeId: string): Promise<Object | null>;
+
+  // Synchronous getters
+  isStoresReady(): boolean;
+  getPositioningStatus(): string | null;
+  isBrowseOnly(): boolean;
+  hasPositionSource(): boolean;
+
+  addListener(eventName: string): void;
+  removeListeners(count: number): void;
+}
+
+export default TurboModuleRegistry.get<Spec>("PoiMapModule");
@@ -1,10 +1,8 @@
 import React, { useEffect, useRef } from "react";
 import {
-  findNodeHandle,
   NativeModules,
   Platform,
   requireNativeComponent,
-  UIManager,
   View,
 } from "react-native";
 
@@ -42,7 +40,6 @@ const PoiMapView = ({
 }) => {
   const ref = useRef(null);
   const initializedRef = useRef(false);
-  const fragmentCreatedRef = useRef(false);
 
   useEffect(() => {
     if (
@@ -57,27 +54,8 @@ const PoiMapView = ({
     }
   }, [applicationId, applicationSecret, uniqueId]);
 
-  useEffect(() => {
-    if (Platform.OS === "android" && UIManager.getViewManagerConfig && !fragmentCreatedRef.current) {
-      const viewManagerConfig =
-        UIManager.getViewManagerConfig("PoiMapViewManager");
-
-      if (viewManagerConfig && ref.current) {
-        const id = findNodeHandle(ref.current);
-        
-        if (id && viewManagerConfig.Commands?.create) {
-          setTimeout(() => {
-            UIManager.dispatchViewManagerCommand(
-              id,
-              viewManagerConfig.Commands.create.toString(),
-              [id]
-            );
-            fragmentCreatedRef.current = true;
-          }, 500);
-        }
-      }
-    }
-  }, [applicationId, applicationSecret, uniqueId]);
+  // On Android the map fragment is created natively once the view is
+  // attached, laid out and has its credentials
 
   const initializeSDK = async () => {
     if (!NativeModule) {
@@ -0,0 +1,67 @@
+package __PACKAGE_NAME__;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.ProcessLifecycleOwner;
+
+/**
+ * Tells the session when the app goes to the background and comes back.
+ *
+ * ProcessLifecycleOwner reports the app stopped a moment after its last
+ * activity stops, so a rotation or moving between activities does not count
+ * as going to the background. The session releases the SDK after a grace
+ * period in the background, unless headless positioning holds it, and binds
+ * it again when the app comes back.
+ */
+public final class PoiAppLifecycle implements DefaultLifecycleObserver {
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private static PoiAppLifecycle instance;
+
+    /**
+     * Register once per process. Observers are added and called on the main thread.
+     */
+    public static synchronized void register() {
+        if (instance == null) {
+            final PoiAppLifecycle observer = new PoiAppLifecycle();
+            instance = observer;
+            MAIN_HANDLER.post(new Runnable() {
+                @Override
+                public void run() {
+                    ProcessLifecycleOwner.get().getLifecycle().addObserver(observer);
+                }
+            });
+        }
+    }
+
+    public static synchronized void unregister() {
+        if (instance != null) {
+            final PoiAppLifecycle observer = instance;
+            instance = null;
+            MAIN_HANDLER.post(new Runnable() {
+                @Override
+                public void run() {
+                    ProcessLifecycleOwner.get().getLifecycle().removeObserver(observer);
+                }
+            });
+        }
+    }
+
+    private PoiAppLifecycle() {
+    }
+
+    @Override
+    public void onStart(@NonNull LifecycleOwner owner) {
+        PoiNavigationSession.getInstance().setInBackground(false);
+    }
+
+    @Override
+    public void onStop(@NonNull LifecycleOwner owner) {
+        PoiNavigationSession.getInstance().setInBackground(true);
+    }
+}
@@ -0,0 +1,108 @@
+package __PACKAGE_NAME__;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+import android.util.Log;
+
+import java.nio.charset.Charset;
+import java.security.KeyStore;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Application secrets kept for background work, such as venue prefetches.
+ *
+ * Secrets are encrypted with an AES key held by the Android keystore, which
+ * never leaves it, and only the encrypted form is written to shared
+ * preferences. Work requests carry the key of a stored credential instead of
+ * the secret, so it never lands in plaintext in the WorkManager database.
+ */
+public final class PoiCredentialStore {
+
+    private static final String TAG = "PoiCredentialStore";
+    private static final String PREFS_NAME = "poilabs_credentials";
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String KEY_ALIAS = "poilabs_credentials";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private PoiCredentialStore() {
+    }
+
+    /**
+     * Store the secret of a venue, returning the key to read it back with, or null if it could not be stored
+     */
+    public static synchronized String put(Context context, String applicationId, String uniqueId, String secret) {
+        String credentialKey = applicationId + "_" + uniqueId;
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, getOrCreateKey());
+            byte[] encrypted = cipher.doFinal(secret.getBytes(UTF_8));
+            String value = Base64.encodeToString(cipher.getIV(), Base64.NO_WRAP) + ":"
+                    + Base64.encodeToString(encrypted, Base64.NO_WRAP);
+            prefs(context).edit().putString(credentialKey, value).apply();
+            return credentialKey;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to store credential: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * The stored secret, or null if there is none or it can no longer be decrypted
+     */
+    public static synchronized String get(Context context, String credentialKey) {
+        String value = prefs(context).getString(credentialKey, null);
+        if (value == null) {
+            return null;
+        }
+        int separator = value.indexOf(':');
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            byte[] iv = Base64.decode(value.substring(0, separator), Base64.NO_WRAP);
+            byte[] encrypted = Base64.decode(value.substring(separator + 1), Base64.NO_WRAP);
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, getOrCreateKey(), new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            return new String(cipher.doFinal(encrypted), UTF_8);
+        } catch (Exception e) {
+            // The keystore key is lost with a backup restore to another device
+            Log.e(TAG, "Failed to read credential: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    public static synchronized void clear(Context context) {
+        prefs(context).edit().clear().apply();
+    }
+
+    private static SecretKey getOrCreateKey() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        KeyStore.Entry entry = keyStore.getEntry(KEY_ALIAS, null);
+        if (entry instanceof KeyStore.SecretKeyEntry) {
+            return ((KeyStore.SecretKeyEntry) entry).getSecretKey();
+        }
+
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(KEY_ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return generator.generateKey();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
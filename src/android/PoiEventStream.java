@@ -0,0 +1,201 @@
+package __PACKAGE_NAME__;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends SDK status changes and errors to JS.
+ *
+ * Events are collected on the main thread and emitted as one array per frame
+ * on the PoiNavigationEvents channel. Status changes arriving within the
+ * coalescing window of the last emitted status collapse into the latest one.
+ */
+public final class PoiEventStream {
+
+    public static final String EVENT_NAME = "PoiNavigationEvents";
+    public static final long DEFAULT_STATUS_WINDOW_MS = 250;
+    public static final int MAX_PENDING_ERRORS = 32;
+
+    private static final PoiEventStream INSTANCE = new PoiEventStream();
+
+    public static PoiEventStream getInstance() {
+        return INSTANCE;
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile ReactApplicationContext reactContext;
+    private volatile long statusWindowMs = DEFAULT_STATUS_WINDOW_MS;
+
+    // Only accessed on the main thread
+    private String pendingStatus;
+    private long pendingStatusTime;
+    private final List<String> pendingErrors = new ArrayList<String>();
+    private final List<Long> pendingErrorTimes = new ArrayList<Long>();
+    private long lastStatusEmitTime = 0;
+    private boolean flushScheduled = false;
+    private boolean waitingForWindow = false;
+
+    private long received = 0;
+    private long emitted = 0;
+    private long coalesced = 0;
+    private long dropped = 0;
+    private long batches = 0;
+
+    private final Choreographer.FrameCallback flushCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            flushScheduled = false;
+            flush();
+        }
+    };
+
+    private final Runnable scheduleFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled = false;
+            waitingForWindow = false;
+            scheduleFlush();
+        }
+    };
+
+    private PoiEventStream() {
+    }
+
+    public void setReactContext(ReactApplicationContext reactContext) {
+        this.reactContext = reactContext;
+    }
+
+    /**
+     * Drop the context when its React instance goes away, unless a newer one replaced it
+     */
+    public void clearReactContext(ReactApplicationContext reactContext) {
+        if (this.reactContext == reactContext) {
+            this.reactContext = null;
+        }
+    }
+
+    public void setStatusWindowMs(long statusWindowMs) {
+        this.statusWindowMs = Math.max(0, statusWindowMs);
+    }
+
+    public void onStatusChanged(Object status) {
+        received++;
+        if (pendingStatus != null) {
+            coalesced++;
+        }
+        pendingStatus = String.valueOf(status);
+        pendingStatusTime = System.currentTimeMillis();
+        scheduleFlush();
+    }
+
+    public void onError(Throwable throwable) {
+        received++;
+        if (pendingErrors.size() >= MAX_PENDING_ERRORS) {
+            dropped++;
+            return;
+        }
+        pendingErrors.add(throwable != null ? String.valueOf(throwable.getMessage()) : "Unknown error");
+        pendingErrorTimes.add(System.currentTimeMillis());
+        scheduleFlush();
+    }
+
+    public WritableMap getStats() {
+        WritableMap stats = Arguments.createMap();
+        stats.putDouble("received", received);
+        stats.putDouble("emitted", emitted);
+        stats.putDouble("coalesced", coalesced);
+        stats.putDouble("dropped", dropped);
+        stats.putDouble("batches", batches);
+        stats.putDouble("statusWindowMs", statusWindowMs);
+        return stats;
+    }
+
+    public void resetStats() {
+        received = 0;
+        emitted = 0;
+        coalesced = 0;
+        dropped = 0;
+        batches = 0;
+    }
+
+    /**
+     * Flush on the next frame, or once the status window has passed if only a status is pending
+     */
+    private void scheduleFlush() {
+        if (waitingForWindow && !pendingErrors.isEmpty()) {
+            mainHandler.removeCallbacks(scheduleFlushRunnable);
+            waitingForWindow = false;
+            flushScheduled = false;
+        }
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+
+        long wait = statusWindowMs - (SystemClock.elapsedRealtime() - lastStatusEmitTime);
+        if (pendingErrors.isEmpty() && wait > 0) {
+            waitingForWindow = true;
+            mainHandler.postDelayed(scheduleFlushRunnable, wait);
+        } else {
+            Choreographer.getInstance().postFrameCallback(flushCallback);
+        }
+    }
+
+    private void flush() {
+        WritableArray events = Arguments.createArray();
+        int count = 0;
+
+        for (int i = 0; i < pendingErrors.size(); i++) {
+            WritableMap event = Arguments.createMap();
+            event.putString("type", "error");
+            event.putString("message", pendingErrors.get(i));
+            event.putDouble("timestamp", pendingErrorTimes.get(i));
+            events.pushMap(event);
+            count++;
+        }
+        pendingErrors.clear();
+        pendingErrorTimes.clear();
+
+        long now = SystemClock.elapsedRealtime();
+        if (pendingStatus != null) {
+            if (now - lastStatusEmitTime >= statusWindowMs) {
+                WritableMap event = Arguments.createMap();
+                event.putString("type", "status");
+                event.putString("status", pendingStatus);
+                event.putDouble("timestamp", pendingStatusTime);
+                events.pushMap(event);
+                count++;
+                pendingStatus = null;
+                lastStatusEmitTime = now;
+            } else {
+                scheduleFlush();
+            }
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        ReactApplicationContext context = reactContext;
+        if (context == null || !context.hasActiveReactInstance()) {
+            dropped += count;
+            return;
+        }
+
+        context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(EVENT_NAME, events);
+        emitted += count;
+        batches++;
+    }
+}
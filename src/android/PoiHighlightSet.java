@@ -0,0 +1,82 @@
+package __PACKAGE_NAME__;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Store IDs currently highlighted on a map view, owned by its fragment.
+ *
+ * Updates are applied as replace/add/remove deltas with duplicates removed,
+ * when the view receives them, so the set only changes for deltas that
+ * reached it. An update that leaves the set as it was reports no change so
+ * nothing is sent to the SDK, which only takes the full set. Main thread only.
+ */
+public final class PoiHighlightSet {
+
+    private LinkedHashSet<String> current = new LinkedHashSet<String>();
+
+    // Reused for replace updates so an unchanged set allocates no new table
+    private LinkedHashSet<String> scratch = new LinkedHashSet<String>();
+
+    /**
+     * Apply the deltas and return the new set, or null if it did not change
+     */
+    public List<String> update(List<String> replace, List<String> add, List<String> remove) {
+        boolean changed = false;
+
+        if (replace != null) {
+            scratch.clear();
+            for (String storeId : replace) {
+                if (storeId != null) {
+                    scratch.add(storeId);
+                }
+            }
+            if (!scratch.equals(current)) {
+                LinkedHashSet<String> previous = current;
+                current = scratch;
+                scratch = previous;
+                changed = true;
+            }
+        }
+
+        if (remove != null) {
+            for (String storeId : remove) {
+                changed |= current.remove(storeId);
+            }
+        }
+
+        if (add != null) {
+            for (String storeId : add) {
+                if (storeId != null) {
+                    changed |= current.add(storeId);
+                }
+            }
+        }
+
+        if (!changed) {
+            return null;
+        }
+        return Collections.unmodifiableList(new ArrayList<String>(current));
+    }
+
+    /**
+     * Replace the set with the given stores, for a map restoring its venue state
+     */
+    public void replaceAll(List<String> storeIds) {
+        current.clear();
+        current.addAll(storeIds);
+    }
+
+    public int size() {
+        return current.size();
+    }
+
+    /**
+     * Forget the set, for a map that starts over without highlights
+     */
+    public void clear() {
+        current.clear();
+    }
+}
@@ -0,0 +1,119 @@
+package __PACKAGE_NAME__;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Command sent from PoiMapModule to the map fragments
+ */
+public final class PoiMapCommand {
+
+    public enum Type {
+        SHOW_POINTS,
+        // Delta to the view's highlight set, turned into SHOW_POINTS by the view
+        HIGHLIGHT,
+        NAVIGATE_TO,
+        RESTART
+    }
+
+    public interface HighlightCallback {
+        /**
+         * Called on the main thread once a view has applied a highlight delta
+         */
+        void onHighlighted(boolean changed, int size);
+    }
+
+    public final Type type;
+    public final List<String> storeIds;
+    public final String storeId;
+    public final String language;
+    public final boolean incremental;
+
+    // Highlight delta, any of them may be null
+    public final List<String> replaceIds;
+    public final List<String> addIds;
+    public final List<String> removeIds;
+    public final HighlightCallback onHighlighted;
+
+    // Run on the main thread once the command has been applied to the map
+    public final Runnable onApplied;
+
+    // For the command queue latency metric
+    public final long createdNanos = PoiMetrics.now();
+
+    // Set when whoever sent the command gave up on it, such as a route request that timed out
+    private volatile boolean cancelled = false;
+
+    private PoiMapCommand(Type type, List<String> storeIds, String storeId, String language, boolean incremental,
+            Runnable onApplied) {
+        this(type, storeIds, storeId, language, incremental, onApplied, null, null, null, null);
+    }
+
+    private PoiMapCommand(Type type, List<String> storeIds, String storeId, String language, boolean incremental,
+            Runnable onApplied, List<String> replaceIds, List<String> addIds, List<String> removeIds,
+            HighlightCallback onHighlighted) {
+        this.type = type;
+        this.storeIds = storeIds;
+        this.storeId = storeId;
+        this.language = language;
+        this.incremental = incremental;
+        this.onApplied = onApplied;
+        this.replaceIds = replaceIds;
+        this.addIds = addIds;
+        this.removeIds = removeIds;
+        this.onHighlighted = onHighlighted;
+    }
+
+    /**
+     * Drop the command wherever it is still queued or buffered, it is not applied to the map
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Whether this command makes an older one of the same type pointless.
+     * Only a highlight delta does not, as deltas add up.
+     */
+    public boolean supersedes(PoiMapCommand older) {
+        return type == older.type && type != Type.HIGHLIGHT;
+    }
+
+    public static PoiMapCommand showPoints(List<String> storeIds) {
+        return new PoiMapCommand(Type.SHOW_POINTS, storeIds, null, null, false, null);
+    }
+
+    public static PoiMapCommand showPoint(String storeId) {
+        return new PoiMapCommand(Type.SHOW_POINTS, Collections.singletonList(storeId), null, null, false, null);
+    }
+
+    /**
+     * Change the highlight set of the receiving view, which shows the result if it changed
+     */
+    public static PoiMapCommand highlight(List<String> replaceIds, List<String> addIds, List<String> removeIds,
+            HighlightCallback onHighlighted) {
+        return new PoiMapCommand(Type.HIGHLIGHT, null, null, null, false, null, replaceIds, addIds, removeIds,
+                onHighlighted);
+    }
+
+    public static PoiMapCommand navigateTo(String storeId) {
+        return navigateTo(storeId, null);
+    }
+
+    public static PoiMapCommand navigateTo(String storeId, Runnable onApplied) {
+        return new PoiMapCommand(Type.NAVIGATE_TO, null, storeId, null, false, onApplied);
+    }
+
+    /**
+     * Restart the map in another language. The SDK is always restarted in
+     * full; an incremental restart shows the current route and highlight again
+     * once the stores reload.
+     */
+    public static PoiMapCommand restart(String language, boolean incremental) {
+        return new PoiMapCommand(Type.RESTART, null, null, language != null ? language : "en", incremental, null);
+    }
+}
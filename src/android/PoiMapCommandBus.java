@@ -0,0 +1,174 @@
+package __PACKAGE_NAME__;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Delivers map commands to the fragments hosting them.
+ *
+ * Commands are posted to the main thread once and handed to the target
+ * directly, without Intent marshalling or filter matching. Commands sent
+ * before their target registers are buffered and delivered on register:
+ * those for a view tag to that view, those for ALL_VIEWS to the first view
+ * registering. A newer buffered command replaces an older one of the same
+ * type and address, except highlight deltas which add up, and the buffer
+ * drops its oldest entry when full.
+ * Restarts are not buffered, a view registering later starts with the
+ * session as it is.
+ */
+public final class PoiMapCommandBus {
+
+    private static final String TAG = "PoiMapCommandBus";
+
+    /**
+     * Address every registered map view
+     */
+    public static final int ALL_VIEWS = -1;
+
+    public static final int MAX_BUFFERED = 32;
+
+    public interface Target {
+        void onCommand(PoiMapCommand command);
+    }
+
+    private static final class Buffered {
+        final int viewTag;
+        final PoiMapCommand command;
+
+        Buffered(int viewTag, PoiMapCommand command) {
+            this.viewTag = viewTag;
+            this.command = command;
+        }
+    }
+
+    private static final PoiMapCommandBus INSTANCE = new PoiMapCommandBus();
+
+    public static PoiMapCommandBus getInstance() {
+        return INSTANCE;
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Only accessed on the main thread
+    private final SparseArray<Target> targets = new SparseArray<Target>();
+    private final ArrayDeque<Buffered> buffered = new ArrayDeque<Buffered>();
+
+    private PoiMapCommandBus() {
+    }
+
+    public void register(int viewTag, Target target) {
+        targets.put(viewTag, target);
+
+        if (buffered.isEmpty()) {
+            return;
+        }
+        List<PoiMapCommand> commands = new ArrayList<PoiMapCommand>();
+        Iterator<Buffered> iterator = buffered.iterator();
+        while (iterator.hasNext()) {
+            Buffered entry = iterator.next();
+            if (entry.command.isCancelled()) {
+                iterator.remove();
+            } else if (entry.viewTag == viewTag || entry.viewTag == ALL_VIEWS) {
+                commands.add(entry.command);
+                iterator.remove();
+            }
+        }
+        for (PoiMapCommand command : commands) {
+            target.onCommand(command);
+        }
+    }
+
+    public void unregister(int viewTag, Target target) {
+        if (targets.get(viewTag) == target) {
+            targets.remove(viewTag);
+        }
+    }
+
+    /**
+     * Drop the commands buffered for a view that will never register
+     */
+    public void discard(int viewTag) {
+        Iterator<Buffered> iterator = buffered.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().viewTag == viewTag) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void send(PoiMapCommand command) {
+        send(ALL_VIEWS, command);
+    }
+
+    public void send(final int viewTag, final PoiMapCommand command) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            deliver(viewTag, command);
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                deliver(viewTag, command);
+            }
+        });
+    }
+
+    /**
+     * Hand a command to its targets, or buffer it when none is registered.
+     * Main thread only.
+     *
+     * @return the number of views the command reached, 0 if it was buffered or dropped
+     */
+    public int deliver(int viewTag, PoiMapCommand command) {
+        int delivered = 0;
+        if (viewTag != ALL_VIEWS) {
+            Target target = targets.get(viewTag);
+            if (target != null) {
+                target.onCommand(command);
+                delivered = 1;
+            }
+        } else {
+            // A target may unregister while handling the command
+            int size = targets.size();
+            Target[] snapshot = new Target[size];
+            for (int i = 0; i < size; i++) {
+                snapshot[i] = targets.valueAt(i);
+            }
+            for (Target target : snapshot) {
+                target.onCommand(command);
+            }
+            delivered = size;
+        }
+
+        if (delivered == 0) {
+            buffer(viewTag, command);
+        }
+        return delivered;
+    }
+
+    private void buffer(int viewTag, PoiMapCommand command) {
+        if (command.type == PoiMapCommand.Type.RESTART) {
+            return;
+        }
+
+        Iterator<Buffered> iterator = buffered.iterator();
+        while (iterator.hasNext()) {
+            Buffered entry = iterator.next();
+            if (entry.viewTag == viewTag && command.supersedes(entry.command)) {
+                iterator.remove();
+            }
+        }
+        if (buffered.size() >= MAX_BUFFERED) {
+            Buffered dropped = buffered.pollFirst();
+            Log.w(TAG, "Command buffer full, dropping " + dropped.command.type + " for view " + dropped.viewTag);
+        }
+        buffered.addLast(new Buffered(viewTag, command));
+    }
+}
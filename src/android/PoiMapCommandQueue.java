@@ -0,0 +1,51 @@
+package __PACKAGE_NAME__;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Holds map commands sent before the stores are ready.
+ *
+ * A newer command replaces an older one of the same type: only the last route
+ * target counts and a highlight set replaces the previous one, as it would on
+ * the map. The queue is bounded and drops its oldest entry when full.
+ */
+public final class PoiMapCommandQueue {
+
+    public static final int MAX_PENDING = 16;
+
+    private final ArrayDeque<PoiMapCommand> pending = new ArrayDeque<PoiMapCommand>();
+
+    public void offer(PoiMapCommand command) {
+        Iterator<PoiMapCommand> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            if (command.supersedes(iterator.next())) {
+                iterator.remove();
+            }
+        }
+
+        if (pending.size() >= MAX_PENDING) {
+            pending.pollFirst();
+        }
+        pending.addLast(command);
+    }
+
+    /**
+     * Remove and return the pending commands in the order they were sent
+     */
+    public List<PoiMapCommand> drain() {
+        List<PoiMapCommand> commands = new ArrayList<PoiMapCommand>(pending);
+        pending.clear();
+        return commands;
+    }
+
+    public void clear() {
+        pending.clear();
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+}
@@ -0,0 +1,105 @@
+package __PACKAGE_NAME__;
+
+import android.content.Context;
+import android.widget.FrameLayout;
+
+/**
+ * Host view for the map fragment.
+ *
+ * React Native drops layout requests coming from native children, so views
+ * added by the fragment would never be measured. Instead of re-laying out on
+ * every frame, a single pass is posted whenever a child asks for layout or the
+ * React frame changes size.
+ *
+ * The view also tells its manager when it becomes attached or gets a size,
+ * which are the conditions for creating the map fragment.
+ */
+public class PoiMapContainerView extends FrameLayout {
+
+    public interface HostListener {
+        void onHostChanged(PoiMapContainerView view);
+    }
+
+    // For the view-to-fragment metric
+    public final long createdNanos = PoiMetrics.now();
+
+    private boolean layoutPending = false;
+    private boolean released = false;
+    private HostListener hostListener;
+
+    private final Runnable layoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            layoutPending = false;
+            if (released) {
+                return;
+            }
+            measure(MeasureSpec.makeMeasureSpec(getWidth(), MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(getHeight(), MeasureSpec.EXACTLY));
+            layout(getLeft(), getTop(), getRight(), getBottom());
+            getViewTreeObserver().dispatchOnGlobalLayout();
+        }
+    };
+
+    public PoiMapContainerView(Context context) {
+        super(context);
+    }
+
+    @Override
+    public void requestLayout() {
+        super.requestLayout();
+        scheduleLayout();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        scheduleLayout();
+        notifyHost();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        notifyHost();
+    }
+
+    public void setHostListener(HostListener hostListener) {
+        this.hostListener = hostListener;
+    }
+
+    /**
+     * Attached and laid out with a size, so a fragment can be placed in it
+     */
+    public boolean isReadyToHost() {
+        return !released && isAttachedToWindow() && getWidth() > 0 && getHeight() > 0;
+    }
+
+    private void notifyHost() {
+        if (hostListener != null && isReadyToHost()) {
+            hostListener.onHostChanged(this);
+        }
+    }
+
+    /**
+     * Post one layout pass, collapsing repeated requests until it has run
+     */
+    public void scheduleLayout() {
+        // Called from the View constructor before fields are initialized
+        if (layoutRunnable == null || layoutPending || released) {
+            return;
+        }
+        layoutPending = true;
+        post(layoutRunnable);
+    }
+
+    /**
+     * Stop scheduling layout passes once React drops the view
+     */
+    public void release() {
+        released = true;
+        hostListener = null;
+        layoutPending = false;
+        removeCallbacks(layoutRunnable);
+    }
+}
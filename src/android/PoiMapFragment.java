@@ -2,40 +2,40 @@ package __PACKAGE_NAME__;
 
 import android.Manifest;
 import android.annotation.TargetApi;
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+import androidx.fragment.app.FragmentTransaction;
+import androidx.tracing.Trace;
 
 import com.poilabs.navigation.model.PoiNavigation;
-import com.poilabs.navigation.model.PoiSdkConfig;
 import com.poilabs.navigation.view.fragments.MapFragment;
 import com.poilabs.poilabspositioning.model.PLPStatus;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import android.util.Log;
+import java.util.Collections;
+import java.util.List;
+
 
 public class PoiMapFragment extends Fragment {
     
     private static final String TAG = "PoiMapFragment";
     
-    public static PoiMapFragment newInstance(String applicationId, String applicationSecret, String uniqueId,
-            String language, String showOnMapStoreId, String getRouteStoreId) {
+    public static PoiMapFragment newInstance(int viewTag, String applicationId, String applicationSecret,
+            String uniqueId, String language, String showOnMapStoreId, String getRouteStoreId) {
         
         PoiMapFragment poiMapFragment = new PoiMapFragment();
 
         Bundle args = new Bundle();
+        args.putInt("viewTag", viewTag);
         args.putString("applicationId", applicationId);
         args.putString("applicationSecret", applicationSecret);
         args.putString("uniqueId", uniqueId);
@@ -47,6 +47,7 @@ public class PoiMapFragment extends Fragment {
         return poiMapFragment;
     }
 
+    private int viewTag = PoiMapCommandBus.ALL_VIEWS;
     private String applicationId;
     private String applicationSecret;
     private String uniqueId;
@@ -55,59 +56,231 @@ public class PoiMapFragment extends Fragment {
     private String getRouteStoreId;
 
     private boolean isStoresReady = false;
+    // Whether this view shows the SDK map, only one view does at a time
+    private boolean hasMap = false;
+
+    private long mapRequestTime;
+    private long permissionRequestNanos = 0;
+    private boolean attaching = false;
+    private boolean firstFrameRecorded = false;
+
+    // Commands sent before the stores are ready or while another view shows the
+    // map, flushed in order once this view has both
+    private final PoiMapCommandQueue pendingCommands = new PoiMapCommandQueue();
+
+    // Last route and highlight shown on the map, restored after an incremental
+    // restart or when this view gets the map back from another one
+    private final PoiMapCommandQueue appliedCommands = new PoiMapCommandQueue();
+
+    // The only record of what this view highlights, changed as deltas reach it
+    private final PoiHighlightSet highlightSet = new PoiHighlightSet();
 
-    private final BroadcastReceiver showOnMapReceiver = new BroadcastReceiver() {
+    private final PoiMapCommandBus.Target commandTarget = new PoiMapCommandBus.Target() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            ArrayList<String> store_ids = intent.getStringArrayListExtra("store_ids");
-            if (isStoresReady && store_ids != null && !store_ids.isEmpty()) {
-                requireActivity().runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        PoiNavigation.getInstance().showPointsOnMap(store_ids);
-                    }
-                });
+        public void onCommand(PoiMapCommand command) {
+            if (command.type == PoiMapCommand.Type.HIGHLIGHT) {
+                List<String> storeIds = highlightSet.update(command.replaceIds, command.addIds, command.removeIds);
+                if (command.onHighlighted != null) {
+                    command.onHighlighted.onHighlighted(storeIds != null, highlightSet.size());
+                }
+                if (storeIds == null) {
+                    return;
+                }
+                command = PoiMapCommand.showPoints(storeIds);
+            }
+
+            if (command.type == PoiMapCommand.Type.RESTART) {
+                pendingCommands.clear();
+                if (command.incremental) {
+                    requeueAppliedCommands();
+                } else {
+                    appliedCommands.clear();
+                    highlightSet.clear();
+                }
+                isStoresReady = false;
+                language = command.language;
+            } else if (isStoresReady && hasMap) {
+                runCommand(command);
+            } else {
+                pendingCommands.offer(command);
             }
         }
     };
 
-    private final BroadcastReceiver navigateToStoreReceiver = new BroadcastReceiver() {
+    private final PoiNavigationSession.Listener sessionListener = new PoiNavigationSession.Listener() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            String storeId = intent.getStringExtra("store_id");
-            if (isStoresReady && storeId != null && !storeId.isEmpty()) {
-                requireActivity().runOnUiThread(new Runnable() {
+        public void onMapReady(MapFragment mapFragment) {
+            if (isAdded() && getChildFragmentManager() != null) {
+                Trace.beginSection("PoiMapFragment.mapTransaction");
+                final long commitStart = PoiMetrics.now();
+                FragmentTransaction transaction = getChildFragmentManager().beginTransaction()
+                        .replace(R.id.mapLayout, mapFragment);
+                if (!firstFrameRecorded) {
+                    firstFrameRecorded = true;
+                    transaction.runOnCommit(firstFrameRecorder(attaching));
+                }
+                transaction.runOnCommit(new Runnable() {
                     @Override
                     public void run() {
-                        PoiNavigation.getInstance().navigateToStore(storeId);
+                        PoiMetrics.getInstance().recordSince(PoiMetrics.MAP_COMMIT, commitStart);
                     }
                 });
+                transaction.commitAllowingStateLoss();
+                Trace.endSection();
+            }
+            hasMap = true;
+            if (isStoresReady) {
+                runPendingCommands();
+            }
+        }
+
+        @Override
+        public void onMapLost(MapFragment mapFragment) {
+            hasMap = false;
+            // The map shows the other view's route and highlight from now on
+            requeueAppliedCommands();
+            if (!isAdded()) {
+                return;
+            }
+            try {
+                // Run the add of the map first if it is still pending
+                getChildFragmentManager().executePendingTransactions();
+                if (getChildFragmentManager().findFragmentById(R.id.mapLayout) == mapFragment) {
+                    getChildFragmentManager().beginTransaction()
+                            .remove(mapFragment)
+                            .commitNowAllowingStateLoss();
+                }
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Could not hand the map over: " + e.getMessage(), e);
             }
         }
-    };
 
-    private final BroadcastReceiver restartMapReceiver = new BroadcastReceiver() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            getRouteStoreId = null;
-            showOnMapStoreId = null;
+        public void onStoresReady() {
+            isStoresReady = true;
+            if (hasMap) {
+                runPendingCommands();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (PoiNavigationSession.getInstance().isBound()) {
+                // Reported by the SDK, the map may still load
+                return;
+            }
+            // The bind failed, nothing queued here will be shown
+            hasMap = false;
             isStoresReady = false;
+            for (PoiMapCommand command : pendingCommands.drain()) {
+                command.cancel();
+            }
+            PoiRouteScheduler.getInstance().fail(viewTag, "Map failed to load: " + throwable.getMessage());
+        }
+
+        @Override
+        public void onStatusChanged(PLPStatus status) {
+        }
 
-            String language = intent.getStringExtra("language");
-            if (language == null) {
-                language = "en";
+        @Override
+        public void onReleased() {
+            hasMap = false;
+            isStoresReady = false;
+            // Shown again once the session binds and the stores are back
+            requeueAppliedCommands();
+            if (!isAdded()) {
+                return;
             }
-            String finalLanguage = language;
-            requireActivity().runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    PoiNavigation.getInstance().clearResources();
-                    startNavigation(finalLanguage);
+            try {
+                Fragment map = getChildFragmentManager().findFragmentById(R.id.mapLayout);
+                if (map != null) {
+                    getChildFragmentManager().beginTransaction()
+                            .remove(map)
+                            .commitNowAllowingStateLoss();
                 }
-            });
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Could not remove the released map: " + e.getMessage(), e);
+            }
         }
     };
 
+    /**
+     * Report the time from attaching to the session until the first frame with the map
+     */
+    private Runnable firstFrameRecorder(final boolean warm) {
+        final long requestTime = mapRequestTime;
+        return new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        long durationMs = SystemClock.elapsedRealtime() - requestTime;
+                        PoiNavigationSession.getInstance().recordFirstFrame(warm, durationMs);
+                        PoiMetrics.getInstance().recordNanos(PoiMetrics.FIRST_FRAME, durationMs * 1000000L);
+                    }
+                });
+            }
+        };
+    }
+
+    private void runPendingCommands() {
+        for (PoiMapCommand command : pendingCommands.drain()) {
+            runCommand(command);
+        }
+    }
+
+    /**
+     * Queue the route and highlight shown so far to be shown again, ahead of the commands already queued
+     */
+    private void requeueAppliedCommands() {
+        List<PoiMapCommand> queued = pendingCommands.drain();
+        for (PoiMapCommand applied : appliedCommands.drain()) {
+            pendingCommands.offer(applied);
+        }
+        for (PoiMapCommand command : queued) {
+            pendingCommands.offer(command);
+        }
+    }
+
+    private void runCommand(PoiMapCommand command) {
+        PoiMetrics metrics = PoiMetrics.getInstance();
+        long start = PoiMetrics.now();
+        metrics.recordNanos(PoiMetrics.COMMAND_QUEUE, start - command.createdNanos);
+        Trace.beginSection("PoiMapCommand.execute");
+        try {
+            executeCommand(command);
+        } finally {
+            Trace.endSection();
+        }
+        metrics.recordSince(PoiMetrics.COMMAND_EXECUTE, start);
+    }
+
+    private void executeCommand(PoiMapCommand command) {
+        if (command.isCancelled()) {
+            return;
+        }
+        switch (command.type) {
+            case SHOW_POINTS:
+                if (command.storeIds != null) {
+                    PoiNavigation.getInstance().showPointsOnMap(command.storeIds);
+                    appliedCommands.offer(command);
+                }
+                break;
+            case NAVIGATE_TO:
+                if (command.storeId != null && !command.storeId.isEmpty()) {
+                    PoiNavigation.getInstance().navigateToStore(command.storeId);
+                    appliedCommands.offer(PoiMapCommand.navigateTo(command.storeId));
+                    if (command.onApplied != null) {
+                        command.onApplied.run();
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup parent, Bundle savedInstanceState) {
         super.onCreateView(inflater, parent, savedInstanceState);
@@ -119,6 +292,7 @@ public class PoiMapFragment extends Fragment {
         super.onViewCreated(view, savedInstanceState);
 
         if (getArguments() != null) {
+            viewTag = getArguments().getInt("viewTag", PoiMapCommandBus.ALL_VIEWS);
             applicationId = getArguments().getString("applicationId");
             applicationSecret = getArguments().getString("applicationSecret");
             uniqueId = getArguments().getString("uniqueId");
@@ -133,43 +307,84 @@ public class PoiMapFragment extends Fragment {
             return;
         }
 
-        askLocalPermission();
-
-        LocalBroadcastManager.getInstance(requireContext()).registerReceiver(showOnMapReceiver,
-                new IntentFilter("show-on-map"));
-
-        LocalBroadcastManager.getInstance(requireContext()).registerReceiver(navigateToStoreReceiver,
-                new IntentFilter("navigate-to-store"));
-
-        LocalBroadcastManager.getInstance(requireContext()).registerReceiver(restartMapReceiver,
-                new IntentFilter("restart-map"));
-    }
+        if (getRouteStoreId != null && !getRouteStoreId.isEmpty()) {
+            pendingCommands.offer(PoiMapCommand.navigateTo(getRouteStoreId));
+        } else if (showOnMapStoreId != null && !showOnMapStoreId.isEmpty()) {
+            highlightSet.replaceAll(Collections.singletonList(showOnMapStoreId));
+            pendingCommands.offer(PoiMapCommand.showPoint(showOnMapStoreId));
+        } else {
+            // Show the venue as it was left
+            PoiVenueCache.Entry venueState = PoiNavigationSession.getInstance()
+                    .getVenueState(applicationId, uniqueId, language);
+            if (venueState != null) {
+                if (venueState.highlightedStoreIds != null && !venueState.highlightedStoreIds.isEmpty()) {
+                    highlightSet.replaceAll(venueState.highlightedStoreIds);
+                    pendingCommands.offer(PoiMapCommand.showPoints(venueState.highlightedStoreIds));
+                }
+                if (venueState.routeStoreId != null && !venueState.routeStoreId.isEmpty()) {
+                    pendingCommands.offer(PoiMapCommand.navigateTo(venueState.routeStoreId));
+                }
+            }
+        }
+        PoiMapCommandBus.getInstance().register(viewTag, commandTarget);
 
-    @Override
-    public void onPause() {
-        super.onPause();
+        // The map loads while the permission prompt is shown, positioning waits for the result
+        startNavigation(language);
+        askLocalPermission();
     }
 
+    /**
+     * Pick up a permission granted or revoked in the system settings while the
+     * map was in the background. Browse-only is only reported, the map itself
+     * stays the same either way.
+     */
     @Override
     public void onResume() {
         super.onResume();
+        if (permissionRequestNanos == 0 && getActivity() != null) {
+            PoiPositioningController.getInstance().setPermissionGranted(hasLocationPermission());
+        }
     }
 
     @Override
-    public void onDestroy() {
-        super.onDestroy();
+    public void onDestroyView() {
+        PoiMapCommandBus.getInstance().unregister(viewTag, commandTarget);
+
+        // Before detaching, which may hand the map over and requeue the applied commands
+        saveVenueState();
+        PoiNavigationSession.getInstance().detach(sessionListener);
+        hasMap = false;
+
+        // Queued commands hold route callbacks, which should not outlive the view
+        pendingCommands.clear();
+        appliedCommands.clear();
+        super.onDestroyView();
     }
 
-    @Override
-    public void onDestroyView() {
-        try {
-            LocalBroadcastManager.getInstance(requireContext()).unregisterReceiver(showOnMapReceiver);
-            LocalBroadcastManager.getInstance(requireContext()).unregisterReceiver(navigateToStoreReceiver);
-            LocalBroadcastManager.getInstance(requireContext()).unregisterReceiver(restartMapReceiver);
-        } catch (Exception e) {
-            Log.e(TAG, "Error unregistering receivers: " + e.getMessage());
+    /**
+     * Keep the route and highlights shown on this map for the next map of the same venue
+     */
+    private void saveVenueState() {
+        if (applicationId == null || uniqueId == null) {
+            return;
         }
-        super.onDestroyView();
+        List<String> highlightedStoreIds = null;
+        String routeStoreId = null;
+        // Commands still queued, such as those of a view that lost the map, are newer than the applied ones
+        List<PoiMapCommand> commands = appliedCommands.drain();
+        commands.addAll(pendingCommands.drain());
+        for (PoiMapCommand command : commands) {
+            if (command.isCancelled()) {
+                continue;
+            }
+            if (command.type == PoiMapCommand.Type.SHOW_POINTS) {
+                highlightedStoreIds = command.storeIds;
+            } else if (command.type == PoiMapCommand.Type.NAVIGATE_TO) {
+                routeStoreId = command.storeId;
+            }
+        }
+        PoiNavigationSession.getInstance().saveVenueState(applicationId, uniqueId, language,
+                highlightedStoreIds, routeStoreId);
     }
 
     @Override
@@ -177,16 +392,20 @@ public class PoiMapFragment extends Fragment {
             @NonNull int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
         if (requestCode == 1) {
-            boolean allGranted = true;
+            if (permissionRequestNanos != 0) {
+                PoiMetrics.getInstance().recordSince(PoiMetrics.PERMISSION, permissionRequestNanos);
+                Trace.endAsyncSection("PoiMapFragment.permission", viewTag);
+                permissionRequestNanos = 0;
+            }
+            boolean allGranted = grantResults.length > 0;
             for (int result : grantResults) {
                 if (result != PackageManager.PERMISSION_GRANTED) {
                     allGranted = false;
                     break;
                 }
             }
-            if (allGranted) {
-                askLocalPermission(); // Check other permissions and start navigation
-            }
+            // Without permission the map stays browse-only
+            PoiPositioningController.getInstance().setPermissionGranted(allGranted);
         }
     }
 
@@ -199,53 +418,14 @@ public class PoiMapFragment extends Fragment {
             return;
         }
         
-        try {
-            PoiSdkConfig poiSdkConfig = new PoiSdkConfig(
-                    applicationId,
-                    applicationSecret,
-                    uniqueId);
-                    
-            PoiNavigation.getInstance(
-                    this.getContext(),
-                    language,
-                    poiSdkConfig).bind(new PoiNavigation.OnNavigationReady() {
-                        @Override
-                        public void onReady(MapFragment mapFragment) {
-                            if (isAdded() && getChildFragmentManager() != null) {
-                                getChildFragmentManager().beginTransaction()
-                                        .replace(R.id.mapLayout, mapFragment)
-                                        .commitAllowingStateLoss();
-                            }
-                        }
-
-                        @Override
-                        public void onStoresReady() {
-                            isStoresReady = true;
-                            if (isAdded() && getActivity() != null) {
-                                requireActivity().runOnUiThread(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        if (getRouteStoreId != null && !getRouteStoreId.isEmpty()) {
-                                            PoiNavigation.getInstance().navigateToStore(getRouteStoreId);
-                                        } else if (showOnMapStoreId != null && !showOnMapStoreId.isEmpty()) {
-                                            PoiNavigation.getInstance().showPointsOnMap(Arrays.asList(showOnMapStoreId));
-                                        }
-                                    }
-                                });
-                            }
-                        }
-
-                        @Override
-                        public void onError(Throwable throwable) {
-                        }
-
-                        @Override
-                        public void onStatusChanged(PLPStatus plpStatus) {
-                        }
-                    });
-        } catch (Exception e) {
-            Log.e(TAG, "Exception in startNavigation: " + e.getMessage(), e);
-        }
+        PoiNavigationSession session = PoiNavigationSession.getInstance();
+        session.start(getContext(), applicationId, applicationSecret, uniqueId, language);
+
+        // A retained map is replayed synchronously from attach
+        mapRequestTime = SystemClock.elapsedRealtime();
+        attaching = true;
+        session.attach(sessionListener);
+        attaching = false;
     }
 
     @TargetApi(Build.VERSION_CODES.M)
@@ -254,20 +434,25 @@ public class PoiMapFragment extends Fragment {
             return;
         }
 
-        int hasLocationPermission = requireActivity().checkSelfPermission(Manifest.permission.ACCESS_FINE_LOCATION);
-        int hasCoarseLocationPermission = requireActivity().checkSelfPermission(Manifest.permission.ACCESS_COARSE_LOCATION);
-        
-        if (hasLocationPermission != PackageManager.PERMISSION_GRANTED || 
-            hasCoarseLocationPermission != PackageManager.PERMISSION_GRANTED) {
+        if (!hasLocationPermission()) {
+            if (permissionRequestNanos == 0) {
+                permissionRequestNanos = PoiMetrics.now();
+                Trace.beginAsyncSection("PoiMapFragment.permission", viewTag);
+            }
             requestPermissions(new String[] { 
                 Manifest.permission.ACCESS_FINE_LOCATION,
                 Manifest.permission.ACCESS_COARSE_LOCATION 
             }, 1);
         } else {
-            if (language == null) {
-                language = "en";
-            }
-            startNavigation(language);
+            PoiPositioningController.getInstance().setPermissionGranted(true);
         }
     }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private boolean hasLocationPermission() {
+        return requireActivity().checkSelfPermission(Manifest.permission.ACCESS_FINE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED
+                && requireActivity().checkSelfPermission(Manifest.permission.ACCESS_COARSE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED;
+    }
 }
\ No newline at end of file
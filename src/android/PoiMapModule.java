@@ -1,16 +1,23 @@
 package __PACKAGE_NAME__;
 
-import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+import androidx.annotation.Nullable;
 
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class PoiMapModule extends ReactContextBaseJavaModule {
     
@@ -18,6 +25,24 @@ public class PoiMapModule extends ReactContextBaseJavaModule {
     
     PoiMapModule(ReactApplicationContext context) {
         super(context);
+        PoiEventStream.getInstance().setReactContext(context);
+        PoiPositionStream.getInstance().setReactContext(context);
+        PoiProximityEngine.getInstance().setReactContext(context);
+        PoiMemoryTrimmer.register(context);
+        PoiAppLifecycle.register();
+    }
+
+    /**
+     * Let go of the React context so a reload does not keep the old one alive
+     */
+    @Override
+    public void invalidate() {
+        PoiEventStream.getInstance().clearReactContext(getReactApplicationContext());
+        PoiPositionStream.getInstance().clearReactContext(getReactApplicationContext());
+        PoiProximityEngine.getInstance().clearReactContext(getReactApplicationContext());
+        PoiMemoryTrimmer.unregister();
+        PoiAppLifecycle.unregister();
+        super.invalidate();
     }
 
     @Override
@@ -25,106 +50,553 @@ public class PoiMapModule extends ReactContextBaseJavaModule {
         return "PoiMapModule";
     }
 
+    /**
+     * Restart the map in another language and resolve with the time it took.
+     * Both modes are a full SDK restart. The "incremental" mode shows the
+     * current route and highlight again once the stores reload, and skips the
+     * restart when the language is already loaded; "full" drops them like a
+     * fresh map.
+     */
     @ReactMethod
-    public void restartMap(String language) {
-        ReactApplicationContext context = getReactApplicationContext();
-        Intent intent = new Intent("restart-map");
-        intent.putExtra("language", language);
-        LocalBroadcastManager.getInstance(context).sendBroadcast(intent);
+    public void restartMap(final String language, String mode, final Promise promise) {
+        final String restartMode = "incremental".equals(mode) ? "incremental" : "full";
+        final boolean incremental = "incremental".equals(restartMode);
+        final long startTime = SystemClock.elapsedRealtime();
+
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    PoiNavigationSession session = PoiNavigationSession.getInstance();
+                    if (incremental && session.isLoaded(language)) {
+                        promise.resolve(createRestartResult(restartMode, false, startTime));
+                        return;
+                    }
+
+                    PoiMapCommandBus.getInstance().send(PoiMapCommand.restart(language, incremental));
+                    session.restart(language);
+                    session.whenReady(new PoiNavigationSession.ReadyCallback() {
+                        @Override
+                        public void onReady() {
+                            promise.resolve(createRestartResult(restartMode, true, startTime));
+                        }
+
+                        @Override
+                        public void onError(Throwable throwable) {
+                            promise.reject("RESTART_ERROR", "Failed to restart map: " + throwable.getMessage(),
+                                    throwable);
+                        }
+                    });
+                } catch (Exception e) {
+                    promise.reject("RESTART_ERROR", "Failed to restart map: " + e.getMessage(), e);
+                }
+            }
+        });
     }
 
-    @ReactMethod
-    public void getRouteTo(String storeId) {
-        ReactApplicationContext context = getReactApplicationContext();
+    private static WritableMap createRestartResult(String mode, boolean reloaded, long startTime) {
+        WritableMap result = Arguments.createMap();
+        result.putString("mode", mode);
+        result.putBoolean("reloaded", reloaded);
+        result.putDouble("durationMs", SystemClock.elapsedRealtime() - startTime);
+        return result;
+    }
 
-        Intent intent = new Intent("navigate-to-store");
-        intent.putExtra("store_id", storeId);
-        LocalBroadcastManager.getInstance(context).sendBroadcast(intent);
+    /**
+     * Commands take the React tag of the target PoiMapView, or -1 for every map view
+     */
+    @ReactMethod
+    public void getRouteTo(String storeId, int viewTag) {
+        PoiRouteScheduler.getInstance().request(storeId, viewTag, null);
     }
 
     @ReactMethod
-    public void showPointOnMap(ReadableArray storeIds) {
+    public void showPointOnMap(ReadableArray storeIds, int viewTag) {
         if (storeIds == null) {
             return;
         }
-        
-        ArrayList<String> storeIdList = new ArrayList<String>();
-        for (int i = 0; i < storeIds.size(); i++) {
-            String storeId = storeIds.getString(i);
-            storeIdList.add(storeId);
+        PoiMapCommandBus.getInstance().send(viewTag, PoiMapCommand.highlight(toList(storeIds), null, null, null));
+    }
+
+    /**
+     * Apply replace/add/remove deltas to the highlighted stores of the map view,
+     * or of every map view. Each view applies them to its own set when they reach
+     * it and only a real change is sent to the map. Resolves with whether a set
+     * changed and its size (the largest one for every map view), or with queued
+     * set if no map view was there yet to receive the deltas.
+     */
+    @ReactMethod
+    public void updateHighlights(@Nullable ReadableArray replace, @Nullable ReadableArray add,
+            @Nullable ReadableArray remove, final int viewTag, final Promise promise) {
+        try {
+            final boolean[] changed = new boolean[1];
+            final int[] size = new int[1];
+            final PoiMapCommand command = PoiMapCommand.highlight(toList(replace), toList(add), toList(remove),
+                    new PoiMapCommand.HighlightCallback() {
+                        @Override
+                        public void onHighlighted(boolean setChanged, int setSize) {
+                            changed[0] |= setChanged;
+                            size[0] = Math.max(size[0], setSize);
+                        }
+                    });
+
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // Delivery is synchronous on the main thread, so the views have reported back here
+                        int delivered = PoiMapCommandBus.getInstance().deliver(viewTag, command);
+                        WritableMap result = Arguments.createMap();
+                        result.putBoolean("changed", changed[0]);
+                        result.putInt("size", size[0]);
+                        result.putBoolean("queued", delivered == 0);
+                        promise.resolve(result);
+                    } catch (Exception e) {
+                        promise.reject("SHOW_POINT_ERROR", "Failed to update highlights: " + e.getMessage(), e);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            promise.reject("SHOW_POINT_ERROR", "Failed to update highlights: " + e.getMessage(), e);
+        }
+    }
+
+    @Nullable
+    private static List<String> toList(@Nullable ReadableArray array) {
+        if (array == null) {
+            return null;
+        }
+        List<String> list = new ArrayList<String>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            list.add(array.getString(i));
         }
-        
-        ReactApplicationContext context = getReactApplicationContext();
-        Intent intent = new Intent("show-on-map");
-        intent.putStringArrayListExtra("store_ids", storeIdList);
-        LocalBroadcastManager.getInstance(context).sendBroadcast(intent);
+        return list;
     }
 
-    // Keep these for plugin API compatibility
+    /**
+     * Bind the SDK ahead of the map view and resolve once the venue stores are ready
+     */
     @ReactMethod
-    public void initNavigationSDK(String applicationId, String applicationSecret, String uniqueId, Promise promise) {
+    public void initNavigationSDK(String applicationId, String applicationSecret, String uniqueId, String language,
+            final Promise promise) {
         try {
-            promise.resolve(true);
+            PoiNavigationSession session = PoiNavigationSession.getInstance();
+            session.start(getReactApplicationContext(), applicationId, applicationSecret, uniqueId, language);
+            session.whenReady(new PoiNavigationSession.ReadyCallback() {
+                @Override
+                public void onReady() {
+                    promise.resolve(true);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    promise.reject("INIT_ERROR", "Failed to initialize SDK: " + throwable.getMessage(), throwable);
+                }
+            });
         } catch (Exception e) {
             promise.reject("INIT_ERROR", "Failed to initialize SDK: " + e.getMessage(), e);
         }
     }
 
     @ReactMethod
-    public void getReadyForStoreMap(Promise promise) {
+    public void getReadyForStoreMap(final Promise promise) {
         try {
-            promise.resolve(true);
+            PoiNavigationSession.getInstance().whenReady(new PoiNavigationSession.ReadyCallback() {
+                @Override
+                public void onReady() {
+                    promise.resolve(true);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    promise.reject("PREP_ERROR", "Failed to prepare store map: " + throwable.getMessage(), throwable);
+                }
+            });
         } catch (Exception e) {
             promise.reject("PREP_ERROR", "Failed to prepare store map: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Let positioning run again, binding the last started configuration if
+     * stopPositioning released it. With headless set, positioning keeps running
+     * in a foreground service without a map view, which needs the service
+     * enabled in the config plugin and location permission.
+     */
     @ReactMethod
-    public void startPositioning(Promise promise) {
+    public void startPositioning(@Nullable final ReadableMap options, final Promise promise) {
         try {
-            promise.resolve(true);
+            if (options != null && options.hasKey("headless") && options.getBoolean("headless")) {
+                startHeadlessPositioning(options, promise);
+                return;
+            }
+            PoiPositioningController.getInstance().setRequested(true, new PoiPositioningController.Callback() {
+                @Override
+                public void onApplied(boolean stopped) {
+                    promise.resolve(true);
+                }
+            });
         } catch (Exception e) {
             promise.reject("POSITIONING_ERROR", "Failed to start positioning: " + e.getMessage(), e);
         }
     }
 
+    private void startHeadlessPositioning(ReadableMap options, final Promise promise) {
+        final String title = options.hasKey("notificationTitle") ? options.getString("notificationTitle") : null;
+        final String text = options.hasKey("notificationText") ? options.getString("notificationText") : null;
+
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                ReactApplicationContext context = getReactApplicationContext();
+                if (!PoiPositioningService.isDeclared(context)) {
+                    promise.reject("HEADLESS_ERROR",
+                            "Headless positioning is not enabled. Set headlessPositioning in the plugin options.");
+                    return;
+                }
+                if (!PoiPositioningService.hasLocationPermission(context)) {
+                    promise.reject("HEADLESS_ERROR", "Location permission not granted");
+                    return;
+                }
+                if (!PoiNavigationSession.getInstance().hasConfig()) {
+                    promise.reject("HEADLESS_ERROR", "SDK not initialized. Call initNavigationSDK first.");
+                    return;
+                }
+                try {
+                    // Also starts positioning again after stopPositioning
+                    PoiNavigationSession.getInstance().setPositioningStopped(false);
+                    PoiPositioningService.start(context, title, text);
+                    promise.resolve(true);
+                } catch (Exception e) {
+                    promise.reject("HEADLESS_ERROR", "Failed to start headless positioning: " + e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stop positioning until startPositioning is called, also headless positioning.
+     * The SDK is unbound, so mounted map views lose their map until then.
+     * Resolves with true once it stopped.
+     */
     @ReactMethod
-    public void stopPositioning(Promise promise) {
+    public void stopPositioning(final Promise promise) {
         try {
-            promise.resolve(true);
+            PoiPositioningService.stop(getReactApplicationContext());
+            PoiNavigationSession.getInstance().setHeld(false);
+            PoiPositioningController.getInstance().setRequested(false, new PoiPositioningController.Callback() {
+                @Override
+                public void onApplied(boolean stopped) {
+                    promise.resolve(stopped);
+                }
+            });
         } catch (Exception e) {
             promise.reject("POSITIONING_ERROR", "Failed to stop positioning: " + e.getMessage(), e);
         }
     }
 
     @ReactMethod
-    public void showSinglePointOnMap(String storeId, Promise promise) {
+    public void getHeadlessPositioningStats(final Promise promise) {
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                promise.resolve(PoiPositioningService.getStats());
+            }
+        });
+    }
+
+    @ReactMethod
+    public void showSinglePointOnMap(String storeId, int viewTag, Promise promise) {
         try {
-            ArrayList<String> storeIdList = new ArrayList<String>();
-            storeIdList.add(storeId);
-
-            ReactApplicationContext context = getReactApplicationContext();
-            Intent intent = new Intent("show-on-map");
-            intent.putStringArrayListExtra("store_ids", storeIdList);
-            LocalBroadcastManager.getInstance(context).sendBroadcast(intent);
-            
+            PoiMapCommandBus.getInstance().send(viewTag,
+                    PoiMapCommand.highlight(Collections.singletonList(storeId), null, null, null));
             promise.resolve(null);
         } catch (Exception e) {
             promise.reject("SHOW_POINT_ERROR", "Failed to show point: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Resolve once the route is shown on the map. Rejects with ROUTE_REPLACED
+     * when a newer route request arrives first, ROUTE_TIMEOUT, or ROUTE_ERROR
+     * when the map failed to load.
+     */
     @ReactMethod
-    public void getRouteToWithPromise(String storeId, Promise promise) {
+    public void getRouteToWithPromise(String storeId, int viewTag, Promise promise) {
         try {
-            ReactApplicationContext context = getReactApplicationContext();
-            Intent intent = new Intent("navigate-to-store");
-            intent.putExtra("store_id", storeId);
-            LocalBroadcastManager.getInstance(context).sendBroadcast(intent);
-            
-            promise.resolve(null);
+            PoiRouteScheduler.getInstance().request(storeId, viewTag, promise);
         } catch (Exception e) {
             promise.reject("ROUTE_ERROR", "Failed to get route: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    // Required by NativeEventEmitter, events are sent through PoiEventStream
+    @ReactMethod
+    public void addListener(String eventName) {
+    }
+
+    @ReactMethod
+    public void removeListeners(double count) {
+    }
+
+    @ReactMethod
+    public void setStatusCoalescingWindow(double windowMs) {
+        PoiEventStream.getInstance().setStatusWindowMs((long) windowMs);
+    }
+
+    @ReactMethod
+    public void getEventStats(final Promise promise) {
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                promise.resolve(PoiEventStream.getInstance().getStats());
+            }
+        });
+    }
+
+    @ReactMethod
+    public void resetEventStats() {
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                PoiEventStream.getInstance().resetStats();
+            }
+        });
+    }
+
+    /**
+     * Keep the map for this long after the last map view unmounts, -1 to keep it
+     */
+    @ReactMethod
+    public void setMapIdleTimeout(double timeoutMs) {
+        PoiNavigationSession.getInstance().setIdleTimeoutMs((long) timeoutMs);
+    }
+
+    /**
+     * Release the SDK this long after the app goes to the background, -1 to keep it
+     */
+    @ReactMethod
+    public void setBackgroundGracePeriod(double gracePeriodMs) {
+        PoiNavigationSession.getInstance().setBackgroundGraceMs((long) gracePeriodMs);
+    }
+
+    @ReactMethod
+    public void getMapMountStats(final Promise promise) {
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                promise.resolve(PoiNavigationSession.getInstance().getMountStats());
+            }
+        });
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public boolean isStoresReady() {
+        return PoiNavigationSession.getInstance().isStoresReady();
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public String getPositioningStatus() {
+        return PoiNavigationSession.getInstance().getLastStatus();
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public boolean isBrowseOnly() {
+        return PoiPositioningController.getInstance().isBrowseOnly(getReactApplicationContext());
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public boolean hasPositionSource() {
+        return PoiPositionStream.getInstance().hasSource();
+    }
+
+    /**
+     * Replace the store catalog of the current venue, used by searchStores/getStore,
+     * and save it for the next start
+     */
+    @ReactMethod
+    public void setStoreCatalog(ReadableArray stores, Promise promise) {
+        try {
+            PoiStoreCatalog catalog = PoiStoreCatalog.getCurrent(getReactApplicationContext());
+            if (catalog == null) {
+                promise.reject("CATALOG_ERROR", "No venue started. Call initNavigationSDK first.");
+                return;
+            }
+            int count = catalog.update(stores);
+            PoiProximityEngine.getInstance().rebuild(getReactApplicationContext());
+            promise.resolve(count);
+        } catch (Exception e) {
+            promise.reject("CATALOG_ERROR", "Failed to update store catalog: " + e.getMessage(), e);
+        }
+    }
+
+    @ReactMethod
+    public void searchStores(String query, int limit, Promise promise) {
+        try {
+            PoiStoreCatalog catalog = PoiStoreCatalog.getCurrent(getReactApplicationContext());
+            promise.resolve(catalog != null ? catalog.search(query, limit) : Arguments.createArray());
+        } catch (Exception e) {
+            promise.reject("CATALOG_ERROR", "Failed to search stores: " + e.getMessage(), e);
+        }
+    }
+
+    @ReactMethod
+    public void getStore(String storeId, Promise promise) {
+        try {
+            PoiStoreCatalog catalog = PoiStoreCatalog.getCurrent(getReactApplicationContext());
+            promise.resolve(catalog != null ? catalog.getStore(storeId) : null);
+        } catch (Exception e) {
+            promise.reject("CATALOG_ERROR", "Failed to get store: " + e.getMessage(), e);
+        }
+    }
+
+    @ReactMethod
+    public void configureRouteRequests(double debounceMs, double timeoutMs) {
+        PoiRouteScheduler.getInstance().setDebounceMs((long) debounceMs);
+        PoiRouteScheduler.getInstance().setTimeoutMs((long) timeoutMs);
+    }
+
+    @ReactMethod
+    public void getMetrics(Promise promise) {
+        try {
+            promise.resolve(PoiMetrics.getInstance().getMetrics());
+        } catch (Exception e) {
+            promise.reject("METRICS_ERROR", "Failed to get metrics: " + e.getMessage(), e);
+        }
+    }
+
+    @ReactMethod
+    public void resetMetrics() {
+        PoiMetrics.getInstance().reset();
+    }
+
+    /**
+     * Download venue data in the background under network, battery and storage
+     * constraints. Resolves false when the venue was fetched within maxAgeMs.
+     */
+    @ReactMethod
+    public void prefetchVenue(String applicationId, String applicationSecret, String uniqueId, String language,
+            double maxAgeMs, double minFreeBytes, boolean unmeteredOnly, Promise promise) {
+        try {
+            promise.resolve(PoiVenuePrefetchWorker.schedule(getReactApplicationContext(), applicationId,
+                    applicationSecret, uniqueId, language, (long) maxAgeMs, (long) minFreeBytes,
+                    PoiVenuePrefetchWorker.DEFAULT_TIMEOUT_MS, unmeteredOnly));
+        } catch (Exception e) {
+            promise.reject("PREFETCH_ERROR", "Failed to schedule venue prefetch: " + e.getMessage(), e);
+        }
+    }
+
+    @ReactMethod
+    public void clearPrefetchState() {
+        PoiVenuePrefetchWorker.clearState(getReactApplicationContext());
+    }
+
+    @ReactMethod
+    public void configureVenueCache(double maxVenues, boolean restoreState) {
+        PoiNavigationSession.getInstance().configureVenueCache((int) maxVenues, restoreState);
+    }
+
+    @ReactMethod
+    public void getVenueCacheStats(final Promise promise) {
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                promise.resolve(PoiNavigationSession.getInstance().getVenueCacheStats());
+            }
+        });
+    }
+
+    /**
+     * Send positions only while JS listens to them
+     */
+    @ReactMethod
+    public void setPositionStreamEnabled(boolean enabled) {
+        PoiPositionStream.getInstance().setEnabled(enabled);
+    }
+
+    @ReactMethod
+    public void configurePositionStream(double maxRateHz, double batchIntervalMs, boolean adaptive,
+            double stationaryMeters, double stationaryIntervalMs) {
+        PoiPositionStream.getInstance().configure(maxRateHz, (long) batchIntervalMs, adaptive, stationaryMeters,
+                (long) stationaryIntervalMs);
+    }
+
+    @ReactMethod
+    public void getPositionStreamStats(Promise promise) {
+        promise.resolve(PoiPositionStream.getInstance().getStats());
+    }
+
+    @ReactMethod
+    public void resetPositionStreamStats() {
+        PoiPositionStream.getInstance().resetStats();
+    }
+
+    /**
+     * Feed recorded fixes through the position stream, resolving once all were played
+     */
+    @ReactMethod
+    public void replayPositions(ReadableArray fixes, double speed, final Promise promise) {
+        try {
+            PoiPositionStream.getInstance().setSource(new PoiPositionReplaySource(fixes, speed,
+                    new PoiPositionReplaySource.Listener() {
+                        @Override
+                        public void onFinished(int count, long durationMs) {
+                            WritableMap result = Arguments.createMap();
+                            result.putInt("count", count);
+                            result.putDouble("durationMs", durationMs);
+                            promise.resolve(result);
+                        }
+
+                        @Override
+                        public void onStopped() {
+                            promise.reject("REPLAY_STOPPED", "Position replay was stopped");
+                        }
+                    }));
+        } catch (Exception e) {
+            promise.reject("REPLAY_ERROR", "Failed to replay positions: " + e.getMessage(), e);
+        }
+    }
+
+    @ReactMethod
+    public void stopPositionReplay() {
+        PoiPositionStream.getInstance().setSource(null);
+    }
+
+    /**
+     * Register zones by storeId or by latitude/longitude, resolving with the number added
+     */
+    @ReactMethod
+    public void addProximityZones(ReadableArray zones, Promise promise) {
+        try {
+            promise.resolve(PoiProximityEngine.getInstance().addZones(zones,
+                    PoiStoreCatalog.getCurrent(getReactApplicationContext())));
+        } catch (Exception e) {
+            promise.reject("PROXIMITY_ERROR", "Failed to add proximity zones: " + e.getMessage(), e);
+        }
+    }
+
+    @ReactMethod
+    public void removeProximityZones(ReadableArray zoneIds) {
+        PoiProximityEngine.getInstance().removeZones(zoneIds);
+    }
+
+    @ReactMethod
+    public void clearProximityZones() {
+        PoiProximityEngine.getInstance().clearZones();
+    }
+
+    @ReactMethod
+    public void configureProximity(double cellSizeMeters, double exitMarginMeters) {
+        PoiProximityEngine.getInstance().configure(cellSizeMeters, exitMarginMeters);
+    }
+
+    @ReactMethod
+    public void getProximityStats(Promise promise) {
+        promise.resolve(PoiProximityEngine.getInstance().getStats());
+    }
+
+    @ReactMethod
+    public void resetProximityStats() {
+        PoiProximityEngine.getInstance().resetStats();
+    }
+}
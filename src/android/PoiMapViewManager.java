@@ -1,12 +1,10 @@
 package __PACKAGE_NAME__;
 
-import android.view.Choreographer;
-import android.view.View;
-import android.view.ViewGroup;
-import android.widget.FrameLayout;
+import android.util.SparseArray;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentActivity;
 
 import com.facebook.react.bridge.ReactApplicationContext;
@@ -19,21 +17,23 @@ import com.facebook.react.uimanager.annotations.ReactProp;
 import java.util.Map;
 import android.util.Log;
 
-public class PoiMapViewManager extends ViewGroupManager<FrameLayout> {
+public class PoiMapViewManager extends ViewGroupManager<PoiMapContainerView> {
 
     public static final String REACT_CLASS = "PoiMapViewManager";
     public final int COMMAND_CREATE = 1;
-    private String applicationId;
-    private String applicationSecret;
-    private String uniqueId;
-    private String language = "en";
-    private String showOnMapStoreId;
-    private String getRouteStoreId;
-    private boolean shouldCreateFragment = false;
-    private FrameLayout currentView = null;
+
+    // Per-view props keyed by React tag, only accessed on the main thread
+    final SparseArray<PoiMapViewState> viewStates = new SparseArray<PoiMapViewState>();
 
     ReactApplicationContext reactContext;
 
+    private final PoiMapContainerView.HostListener hostListener = new PoiMapContainerView.HostListener() {
+        @Override
+        public void onHostChanged(PoiMapContainerView view) {
+            requestFragment(view);
+        }
+    };
+
     public PoiMapViewManager(ReactApplicationContext reactContext) {
         this.reactContext = reactContext;
     }
@@ -44,13 +44,38 @@ public class PoiMapViewManager extends ViewGroupManager<FrameLayout> {
     }
 
     /**
-     * Return a FrameLayout which will later hold the Fragment
+     * Return a container view which will later hold the Fragment
+     */
+    @Override
+    public PoiMapContainerView createViewInstance(ThemedReactContext reactContext) {
+        PoiMapContainerView view = new PoiMapContainerView(reactContext);
+        view.setHostListener(hostListener);
+        return view;
+    }
+
+    /**
+     * Release the view's state and fragment once React has dropped it
+     */
+    @Override
+    public void onDropViewInstance(@NonNull PoiMapContainerView view) {
+        view.release();
+
+        PoiMapViewState state = viewStates.get(view.getId());
+        viewStates.remove(view.getId());
+        PoiMapCommandBus.getInstance().discard(view.getId());
+        if (state != null && state.fragmentCreated) {
+            removeFragment(state);
+        }
+        super.onDropViewInstance(view);
+    }
+
+    /**
+     * Drop the state of views React never dropped, when the React instance goes away
      */
     @Override
-    public FrameLayout createViewInstance(ThemedReactContext reactContext) {
-        FrameLayout frameLayout = new FrameLayout(reactContext);
-        this.currentView = frameLayout;
-        return frameLayout;
+    public void invalidate() {
+        viewStates.clear();
+        super.invalidate();
     }
 
     /**
@@ -63,178 +88,118 @@ public class PoiMapViewManager extends ViewGroupManager<FrameLayout> {
     }
 
     /**
-     * Handle "create" command (called from JS) and call createFragment method
+     * Handle the "create" command kept for older JS callers. The fragment is
+     * created natively, so this is only another request for it and is ignored
+     * once the fragment exists. The New Architecture sends the command name,
+     * the legacy bridge its integer ID.
      */
     @Override
     public void receiveCommand(
-            @NonNull FrameLayout root,
+            @NonNull PoiMapContainerView root,
             String commandId,
             @Nullable ReadableArray args) {
 
         super.receiveCommand(root, commandId, args);
 
         try {
-            int commandIdInt = Integer.parseInt(commandId);
-            switch (commandIdInt) {
-                case COMMAND_CREATE:
-            
-                    if (args != null && args.size() > 0) {
-                        int reactNativeViewId = args.getInt(0);
-                        
-                        createFragment(root, reactNativeViewId);
-                    }
-                    break;
-                default:
-                    Log.w("PoiMapViewManager", "Unknown command: " + commandIdInt);
+            if ("create".equals(commandId) || String.valueOf(COMMAND_CREATE).equals(commandId)) {
+                requestFragment(root);
+            } else {
+                Log.w("PoiMapViewManager", "Unknown command: " + commandId);
             }
-        } catch (NumberFormatException e) {
-            Log.e("PoiMapViewManager", "Failed to parse commandId: " + commandId, e);
         } catch (Exception e) {
             Log.e("PoiMapViewManager", "Error in receiveCommand: " + e.getMessage(), e);
         }
     }
 
     @ReactProp(name = "applicationId")
-    public void setApplicationId(FrameLayout view, String value) {
-        this.applicationId = value;
-        checkAndCreateFragment();
+    public void setApplicationId(PoiMapContainerView view, String value) {
+        getState(view).applicationId = value;
+        requestFragment(view);
     }
 
     @ReactProp(name = "applicationSecret")
-    public void setApplicationSecret(FrameLayout view, String value) {
-        this.applicationSecret = value;
-        checkAndCreateFragment();
+    public void setApplicationSecret(PoiMapContainerView view, String value) {
+        getState(view).applicationSecret = value;
+        requestFragment(view);
     }
 
     @ReactProp(name = "uniqueId")
-    public void setUniqueId(FrameLayout view, String value) {
-        this.uniqueId = value;
-        checkAndCreateFragment();
+    public void setUniqueId(PoiMapContainerView view, String value) {
+        getState(view).uniqueId = value;
+        requestFragment(view);
     }
 
     @ReactProp(name = "language")
-    public void setLanguage(FrameLayout view, String value) {
-        this.language = value != null ? value : "en";
+    public void setLanguage(PoiMapContainerView view, String value) {
+        getState(view).language = value != null ? value : "en";
     }
 
     @ReactProp(name = "showOnMap")
-    public void setShowOnMap(FrameLayout view, String value) {
-        this.showOnMapStoreId = value;
+    public void setShowOnMap(PoiMapContainerView view, String value) {
+        getState(view).showOnMapStoreId = value;
     }
 
     @ReactProp(name = "getRouteTo")
-    public void setGetRouteTo(FrameLayout view, String value) {
-        this.getRouteStoreId = value;
-    }
-
-    private void checkAndCreateFragment() {
-        if (applicationId != null && applicationSecret != null && uniqueId != null && 
-            currentView != null && !shouldCreateFragment) {
-            shouldCreateFragment = true;
-            
-            currentView.post(new Runnable() {
-                @Override
-                public void run() {
-                    createFragmentDirect(currentView);
-                }
-            });
+    public void setGetRouteTo(PoiMapContainerView view, String value) {
+        getState(view).getRouteStoreId = value;
+    }
+
+    private PoiMapViewState getState(PoiMapContainerView view) {
+        PoiMapViewState state = viewStates.get(view.getId());
+        if (state == null) {
+            state = new PoiMapViewState(view.getId());
+            viewStates.put(view.getId(), state);
         }
+        return state;
     }
 
     /**
-     * Create fragment directly when props are ready
+     * The only place a map fragment is created. Runs whenever a prop, attach or
+     * size change may have completed the conditions, and creates the fragment
+     * once per view when it has all credentials, is attached and has a size.
      */
-    private void createFragmentDirect(FrameLayout root) {
-        if (applicationId == null || applicationSecret == null || uniqueId == null) {
+    private void requestFragment(PoiMapContainerView view) {
+        PoiMapViewState state = viewStates.get(view.getId());
+        if (state == null || state.fragmentCreated || !state.hasCredentials() || !view.isReadyToHost()) {
             return;
         }
 
         FragmentActivity activity = (FragmentActivity) reactContext.getCurrentActivity();
-        if (activity == null || activity.isFinishing()) {
+        if (activity == null || activity.isFinishing() || activity.getSupportFragmentManager().isDestroyed()) {
             return;
         }
 
+        state.fragmentCreated = true;
         final PoiMapFragment poiMapFragment = PoiMapFragment.newInstance(
-            applicationId, 
-            applicationSecret, 
-            uniqueId, 
-            language, 
-            showOnMapStoreId, 
-            getRouteStoreId
+            state.viewTag,
+            state.applicationId, 
+            state.applicationSecret, 
+            state.uniqueId, 
+            state.language, 
+            state.showOnMapStoreId, 
+            state.getRouteStoreId
         );
-        
-        int viewId = root.getId();
-        if (viewId == View.NO_ID) {
-            viewId = View.generateViewId();
-            root.setId(viewId);
-        }
-        
+
         activity.getSupportFragmentManager()
                 .beginTransaction()
-                .replace(viewId, poiMapFragment, "poi_map_fragment")
+                .replace(view.getId(), poiMapFragment, state.getFragmentTag())
                 .commitAllowingStateLoss();
-                
-        setupLayout(root);
+        PoiMetrics.getInstance().recordSince(PoiMetrics.VIEW_TO_FRAGMENT, view.createdNanos);
     }
 
-    /**
-     * Original createFragment method (fallback)
-     */
-    public void createFragment(FrameLayout root, int reactNativeViewId) {
-
-        ViewGroup parentView = (ViewGroup) root.findViewById(reactNativeViewId);
-        if (parentView == null) {
-            parentView = root;
-        }
-        setupLayout(parentView);
-
-        // Validate required props
-        if (applicationId == null || applicationSecret == null || uniqueId == null) {
+    private void removeFragment(PoiMapViewState state) {
+        FragmentActivity activity = (FragmentActivity) reactContext.getCurrentActivity();
+        if (activity == null || activity.getSupportFragmentManager().isDestroyed()) {
             return;
         }
 
-        final PoiMapFragment poiMapFragment = PoiMapFragment.newInstance(
-            applicationId, 
-            applicationSecret, 
-            uniqueId, 
-            language, 
-            showOnMapStoreId, 
-            getRouteStoreId
-        );
-
-        FragmentActivity activity = (FragmentActivity) reactContext.getCurrentActivity();
-        if (activity != null && !activity.isFinishing()) {
+        Fragment fragment = activity.getSupportFragmentManager().findFragmentByTag(state.getFragmentTag());
+        if (fragment != null) {
             activity.getSupportFragmentManager()
                     .beginTransaction()
-                    .replace(reactNativeViewId, poiMapFragment, String.valueOf(reactNativeViewId))
+                    .remove(fragment)
                     .commitAllowingStateLoss();
         }
     }
-
-    public void setupLayout(ViewGroup view) {
-        if (view == null) {
-            return;
-        }
-
-        Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
-            @Override
-            public void doFrame(long frameTimeNanos) {
-                manuallyLayoutChildren(view);
-                view.getViewTreeObserver().dispatchOnGlobalLayout();
-                Choreographer.getInstance().postFrameCallback(this);
-            }
-        });
-    }
-
-    /**
-     * Layout all children properly
-     */
-    public void manuallyLayoutChildren(ViewGroup view) {
-        for (int i = 0; i < view.getChildCount(); i++) {
-            View child = view.getChildAt(i);
-            child.measure(View.MeasureSpec.makeMeasureSpec(view.getMeasuredWidth(), View.MeasureSpec.EXACTLY),
-                    View.MeasureSpec.makeMeasureSpec(view.getMeasuredHeight(), View.MeasureSpec.EXACTLY));
-            child.layout(0, 0, child.getMeasuredWidth(), child.getMeasuredHeight());
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package __PACKAGE_NAME__;
+
+/**
+ * Props and fragment bookkeeping for one PoiMapView, keyed by its React tag
+ */
+public final class PoiMapViewState {
+
+    public final int viewTag;
+    public String applicationId;
+    public String applicationSecret;
+    public String uniqueId;
+    public String language = "en";
+    public String showOnMapStoreId;
+    public String getRouteStoreId;
+    public boolean fragmentCreated = false;
+
+    public PoiMapViewState(int viewTag) {
+        this.viewTag = viewTag;
+    }
+
+    public boolean hasCredentials() {
+        return applicationId != null && applicationSecret != null && uniqueId != null;
+    }
+
+    public String getFragmentTag() {
+        return "poi_map_fragment_" + viewTag;
+    }
+}
@@ -0,0 +1,100 @@
+package __PACKAGE_NAME__;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Frees plugin memory in steps as the system asks for it.
+ *
+ * While running, the map the session retains for the next mount is released
+ * when memory is low, if no map view is showing it, and the in-memory store
+ * index is also dropped when memory is critical; it is reloaded from disk on
+ * the next search. In the background the retained map is released once the
+ * app is in the middle of the LRU list, and both go when it is about to be
+ * killed. Hiding the UI alone frees nothing.
+ */
+public final class PoiMemoryTrimmer implements ComponentCallbacks2 {
+
+    private static PoiMemoryTrimmer instance;
+
+    /**
+     * Register once per process, callbacks are dispatched on the main thread
+     */
+    public static synchronized void register(Context context) {
+        if (instance == null) {
+            instance = new PoiMemoryTrimmer(context.getApplicationContext());
+            instance.context.registerComponentCallbacks(instance);
+        }
+    }
+
+    public static synchronized void unregister() {
+        if (instance != null) {
+            instance.context.unregisterComponentCallbacks(instance);
+            instance = null;
+        }
+    }
+
+    private final Context context;
+
+    private PoiMemoryTrimmer(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * The levels are not ordered by severity across foreground and background:
+     * UI_HIDDEN (20) is above RUNNING_CRITICAL (15) but only means the UI went
+     * away, so each level is handled on its own.
+     */
+    // Every level but UI_HIDDEN and BACKGROUND is deprecated in API 34, older releases still send them
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onTrimMemory(int level) {
+        switch (level) {
+            case TRIM_MEMORY_RUNNING_MODERATE:
+                break;
+            case TRIM_MEMORY_RUNNING_LOW:
+                releaseRetainedMap();
+                break;
+            case TRIM_MEMORY_RUNNING_CRITICAL:
+                releaseRetainedMap();
+                trimStoreIndex();
+                break;
+            case TRIM_MEMORY_UI_HIDDEN:
+                // The map is kept for the user coming back, the idle timeout still applies
+                break;
+            case TRIM_MEMORY_BACKGROUND:
+                break;
+            case TRIM_MEMORY_MODERATE:
+                releaseRetainedMap();
+                break;
+            case TRIM_MEMORY_COMPLETE:
+                releaseRetainedMap();
+                trimStoreIndex();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void releaseRetainedMap() {
+        PoiNavigationSession.getInstance().releaseIfIdle();
+    }
+
+    private void trimStoreIndex() {
+        PoiStoreCatalog.trimAll();
+    }
+
+    // Deprecated in API 34 like the trim levels, still called on older releases
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+}
@@ -0,0 +1,165 @@
+package __PACKAGE_NAME__;
+
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Startup and command latency histograms.
+ *
+ * Each metric is a fixed set of buckets allocated up front, so recording a
+ * sample does not allocate. Durations are kept in microseconds and reported
+ * to JS in milliseconds.
+ */
+public final class PoiMetrics {
+
+    public static final int PERMISSION = 0;
+    public static final int TIME_TO_MAP = 1;
+    public static final int MAP_COMMIT = 2;
+    public static final int TIME_TO_STORES = 3;
+    public static final int FIRST_FRAME = 4;
+    public static final int COMMAND_QUEUE = 5;
+    public static final int COMMAND_EXECUTE = 6;
+    public static final int SETUP_PREPARE = 7;
+    public static final int SETUP_HAND_OFF = 8;
+    public static final int SETUP_BIND = 9;
+    public static final int VIEW_TO_FRAGMENT = 10;
+    public static final int PROXIMITY_EVALUATE = 11;
+
+    private static final String[] NAMES = {
+            "permission",
+            "timeToMap",
+            "mapCommit",
+            "timeToStoresReady",
+            "firstFrame",
+            "commandQueue",
+            "commandExecute",
+            "setupPrepare",
+            "setupHandOff",
+            "setupBind",
+            "viewToFragment",
+            "proximityEvaluate",
+    };
+
+    // Bucket upper bounds in microseconds, the last bucket takes everything above
+    private static final long[] BOUNDS_US = {
+            100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000,
+            250000, 500000, 1000000, 2500000, 5000000, 10000000,
+    };
+
+    private static final class Histogram {
+        final long[] buckets = new long[BOUNDS_US.length + 1];
+        long count;
+        long sumUs;
+        long minUs;
+        long maxUs;
+
+        void record(long us) {
+            int index = 0;
+            while (index < BOUNDS_US.length && us > BOUNDS_US[index]) {
+                index++;
+            }
+            buckets[index]++;
+            if (count == 0 || us < minUs) {
+                minUs = us;
+            }
+            if (us > maxUs) {
+                maxUs = us;
+            }
+            count++;
+            sumUs += us;
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = 0;
+            }
+            count = 0;
+            sumUs = 0;
+            minUs = 0;
+            maxUs = 0;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile, capped at the largest sample
+         */
+        long quantileUs(double quantile) {
+            long target = (long) Math.ceil(count * quantile);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS_US.length; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    return Math.min(BOUNDS_US[i], maxUs);
+                }
+            }
+            return maxUs;
+        }
+    }
+
+    private static final PoiMetrics INSTANCE = new PoiMetrics();
+
+    public static PoiMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    private final Histogram[] histograms = new Histogram[NAMES.length];
+
+    private PoiMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Timestamp to pass to recordSince
+     */
+    public static long now() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    public void recordSince(int metric, long startNanos) {
+        recordNanos(metric, now() - startNanos);
+    }
+
+    public synchronized void recordNanos(int metric, long durationNanos) {
+        histograms[metric].record(Math.max(0, durationNanos / 1000));
+    }
+
+    public synchronized WritableMap getMetrics() {
+        WritableMap metrics = Arguments.createMap();
+        for (int i = 0; i < histograms.length; i++) {
+            Histogram histogram = histograms[i];
+            WritableMap map = Arguments.createMap();
+            map.putDouble("count", histogram.count);
+            map.putDouble("minMs", histogram.minUs / 1000.0);
+            map.putDouble("maxMs", histogram.maxUs / 1000.0);
+            map.putDouble("meanMs", histogram.count > 0 ? histogram.sumUs / 1000.0 / histogram.count : 0);
+            map.putDouble("p50Ms", histogram.quantileUs(0.5) / 1000.0);
+            map.putDouble("p90Ms", histogram.quantileUs(0.9) / 1000.0);
+            map.putDouble("p99Ms", histogram.quantileUs(0.99) / 1000.0);
+
+            WritableArray buckets = Arguments.createArray();
+            for (int b = 0; b < histogram.buckets.length; b++) {
+                WritableMap bucket = Arguments.createMap();
+                if (b < BOUNDS_US.length) {
+                    bucket.putDouble("leMs", BOUNDS_US[b] / 1000.0);
+                } else {
+                    bucket.putNull("leMs");
+                }
+                bucket.putDouble("count", histogram.buckets[b]);
+                buckets.pushMap(bucket);
+            }
+            map.putArray("buckets", buckets);
+            metrics.putMap(NAMES[i], map);
+        }
+        return metrics;
+    }
+
+    public synchronized void reset() {
+        for (Histogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,927 @@
+package __PACKAGE_NAME__;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.tracing.Trace;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+import com.poilabs.navigation.model.PoiNavigation;
+import com.poilabs.navigation.model.PoiSdkConfig;
+import com.poilabs.navigation.view.fragments.MapFragment;
+import com.poilabs.poilabspositioning.model.PLPStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Owns the PoiNavigation binding for the process.
+ *
+ * The SDK can be bound ahead of time from PoiMapModule.initNavigationSDK so
+ * that a map view mounted later attaches to the ready MapFragment and stores
+ * instead of starting the SDK itself. The MapFragment is kept across map view
+ * remounts and released after an idle timeout. All state is kept on the main
+ * thread and SDK callbacks are posted there.
+ *
+ * The SDK has a single MapFragment, so only one map view shows it at a time:
+ * the one attached last. Every attached view gets the stores, status and
+ * errors. When a view attaches, or the one showing the map detaches, the map
+ * is handed over explicitly: the old host removes the MapFragment before the
+ * new one adds it, as a fragment cannot be in two fragment managers.
+ *
+ * Binding is staged: the SDK configuration and instance are set up on a
+ * background thread, and only bind itself runs on the main thread. Setup and
+ * teardown never overlap: each setup waits for its main thread step before
+ * the next one starts, and while a setup is in flight the SDK is not cleared
+ * on the main thread; a setup that finds itself stale clears the instance it
+ * set up instead.
+ *
+ * The session follows the app and JS: in the background the SDK is released
+ * after a grace period unless headless positioning holds it, and bound again
+ * when the app comes back. While JS has positioning stopped nothing binds it,
+ * not even a map view, until positioning is started again.
+ */
+public final class PoiNavigationSession {
+
+    private static final String TAG = "PoiNavigationSession";
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 5 * 60 * 1000;
+    public static final long DEFAULT_BACKGROUND_GRACE_MS = 60 * 1000;
+
+    public interface Listener {
+        void onMapReady(MapFragment mapFragment);
+
+        /**
+         * Another map view takes the map over. Remove the MapFragment before returning.
+         */
+        void onMapLost(MapFragment mapFragment);
+
+        void onStoresReady();
+
+        /**
+         * An SDK error. If the bind itself failed the session is no longer bound
+         * and neither the map nor the stores come until it is started again.
+         */
+        void onError(Throwable throwable);
+
+        void onStatusChanged(PLPStatus status);
+
+        /**
+         * The SDK was unbound while this listener was attached, in the background
+         * or by stopPositioning. The MapFragment is gone, the map and stores are
+         * sent again if the session binds again.
+         */
+        void onReleased();
+    }
+
+    public interface ReadyCallback {
+        void onReady();
+
+        void onError(Throwable throwable);
+    }
+
+    private static final PoiNavigationSession INSTANCE = new PoiNavigationSession();
+
+    public static PoiNavigationSession getInstance() {
+        return INSTANCE;
+    }
+
+    // SDK configuration and instance setup run here, off the main thread
+    private static final ExecutorService SETUP_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "PoiNavigationSetup");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Only accessed on the main thread
+    private Context context;
+    private String applicationId;
+    private String applicationSecret;
+    private String uniqueId;
+    private String language;
+    private boolean bound = false;
+    private int generation = 0;
+    // Setups submitted whose main thread step has not run yet
+    private int pendingSetups = 0;
+    private MapFragment mapFragment;
+    // Written on the main thread, also read from synchronous JS calls
+    private volatile boolean storesReady = false;
+    private volatile String lastStatus;
+    // Status updates the SDK sent since the process started, main thread only
+    private int statusUpdates = 0;
+    // In attach order, the last one shows the map
+    private final List<Listener> listeners = new ArrayList<Listener>();
+    private final List<ReadyCallback> readyCallbacks = new ArrayList<ReadyCallback>();
+    private long idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+    private long backgroundGraceMs = DEFAULT_BACKGROUND_GRACE_MS;
+
+    // Start of the current bind and whether its map and stores spans are still open
+    private long bindStartNanos;
+    private boolean mapSpanOpen = false;
+    private boolean storesSpanOpen = false;
+
+    // Attach to first frame of the map, for mounts that reused the map and for cold ones
+    private int warmMounts = 0;
+    private long warmMountTotalMs = 0;
+    private long lastWarmMountMs = 0;
+    private int coldMounts = 0;
+    private long coldMountTotalMs = 0;
+    private long lastColdMountMs = 0;
+    private int idleReleases = 0;
+    private int memoryReleases = 0;
+    private int backgroundReleases = 0;
+    // Runs while a map view is attached, the baseline for headless positioning
+    private final PoiUsageMeter mapUsage = new PoiUsageMeter();
+
+    // Kept bound without a map view for headless positioning
+    private boolean held = false;
+    // Positioning stopped from JS, nothing binds the session until it is started again
+    private boolean positioningStopped = false;
+    // The app has no started activity
+    private boolean inBackground = false;
+    // Released in the background, bound again when the app comes back
+    private boolean releasedInBackground = false;
+    // Calls to start, to tell whether anyone started the session after a given start
+    private int startCount = 0;
+
+    private final PoiVenueCache venueCache = new PoiVenueCache();
+    private boolean restoreVenueState = true;
+    // Set while switching from another venue, until the new stores are ready
+    private String lastVenueKey;
+    private boolean switching = false;
+    private long switchStartTime;
+
+    private final Runnable idleRelease = new Runnable() {
+        @Override
+        public void run() {
+            if (listeners.isEmpty() && bound && !held) {
+                idleReleases++;
+                release();
+            }
+        }
+    };
+
+    private final Runnable backgroundRelease = new Runnable() {
+        @Override
+        public void run() {
+            if (inBackground && bound && !held) {
+                backgroundReleases++;
+                release();
+                releasedInBackground = true;
+            }
+        }
+    };
+
+    private PoiNavigationSession() {
+    }
+
+    /**
+     * Bind the SDK with the given configuration unless it is already bound with it
+     */
+    public void start(final Context context, final String applicationId, final String applicationSecret,
+            final String uniqueId, final String language) {
+        // Right away, so catalog calls made after this one use the new venue
+        PoiStoreCatalog.setCurrentVenue(applicationId, uniqueId);
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                startCount++;
+                if (bound && matches(applicationId, applicationSecret, uniqueId, language)) {
+                    return;
+                }
+                if (bound) {
+                    clearNavigation();
+                    // Callers waiting for the old venue would otherwise be resolved by the new one
+                    notifyReady(new IllegalStateException("SDK session was replaced by another venue"));
+                }
+
+                PoiNavigationSession.this.context = context.getApplicationContext();
+                PoiNavigationSession.this.applicationId = applicationId;
+                PoiNavigationSession.this.applicationSecret = applicationSecret;
+                PoiNavigationSession.this.uniqueId = uniqueId;
+                PoiNavigationSession.this.language = language != null ? language : "en";
+                openVenue();
+                if (positioningStopped) {
+                    // Kept for startPositioning to bind
+                    return;
+                }
+                bind();
+            }
+        });
+    }
+
+    /**
+     * Rebind the current configuration with another language. This is always a
+     * full SDK restart: the SDK has no way to switch the language of a bound
+     * venue, so the map and stores load again.
+     */
+    public void restart(final String language) {
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                if (context == null) {
+                    return;
+                }
+                if (bound) {
+                    clearNavigation();
+                    notifyReady(new IllegalStateException("SDK session was replaced by another language"));
+                }
+                PoiNavigationSession.this.language = language != null ? language : "en";
+                openVenue();
+                if (!positioningStopped) {
+                    bind();
+                }
+            }
+        });
+    }
+
+    /**
+     * Whether the stores of the current venue are loaded in the given language. Main thread only.
+     */
+    public boolean isLoaded(String language) {
+        return bound && storesReady && equal(this.language, language != null ? language : "en");
+    }
+
+    public boolean matches(String applicationId, String applicationSecret, String uniqueId, String language) {
+        return equal(this.applicationId, applicationId)
+                && equal(this.applicationSecret, applicationSecret)
+                && equal(this.uniqueId, uniqueId)
+                && equal(this.language, language != null ? language : "en");
+    }
+
+    /**
+     * Saved route and highlights of a venue, or null if there are none or restoring is off.
+     * Called for a map mounted without commands of its own, which counts as a hit or a miss.
+     * Main thread only.
+     */
+    public PoiVenueCache.Entry getVenueState(String applicationId, String uniqueId, String language) {
+        if (!restoreVenueState) {
+            return null;
+        }
+        return venueCache.lookup(PoiVenueCache.key(applicationId, uniqueId, language));
+    }
+
+    /**
+     * Keep the route and highlights a map view showed for its venue. Main thread only.
+     */
+    public void saveVenueState(String applicationId, String uniqueId, String language,
+            List<String> highlightedStoreIds, String routeStoreId) {
+        venueCache.saveState(PoiVenueCache.key(applicationId, uniqueId, language), highlightedStoreIds,
+                routeStoreId);
+    }
+
+    public void configureVenueCache(final int maxVenues, final boolean restoreState) {
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                venueCache.setMaxVenues(maxVenues);
+                restoreVenueState = restoreState;
+            }
+        });
+    }
+
+    /**
+     * Uptime, awake and CPU time over every period a map view was attached. Main thread only.
+     */
+    public void putMapUsageStats(WritableMap stats) {
+        mapUsage.putStats(stats);
+    }
+
+    public WritableMap getVenueCacheStats() {
+        return venueCache.getStats();
+    }
+
+    /**
+     * Forget every venue and its counts. Main thread only.
+     */
+    public void clearVenueCache() {
+        venueCache.clear();
+        venueCache.resetStats();
+    }
+
+    /**
+     * Whether the SDK is bound, only meaningful on the main thread
+     */
+    public boolean isBound() {
+        return bound;
+    }
+
+    public boolean isStoresReady() {
+        return storesReady;
+    }
+
+    /**
+     * Last PLPStatus reported by the SDK, or null before the first one
+     */
+    public String getLastStatus() {
+        return lastStatus;
+    }
+
+    /**
+     * Number of PLPStatus updates received so far. Main thread only.
+     */
+    public int getStatusUpdates() {
+        return statusUpdates;
+    }
+
+    /**
+     * Add a listener receiving SDK callbacks. It takes the map over from the
+     * current host, and gets the map and stores replayed if they are ready.
+     */
+    public void attach(Listener listener) {
+        mainHandler.removeCallbacks(idleRelease);
+        if (listeners.contains(listener)) {
+            return;
+        }
+        Listener previousHost = getHost();
+        if (previousHost != null && mapFragment != null) {
+            previousHost.onMapLost(mapFragment);
+        }
+        listeners.add(listener);
+        mapUsage.start();
+        if (mapFragment != null) {
+            listener.onMapReady(mapFragment);
+        }
+        if (storesReady) {
+            listener.onStoresReady();
+        }
+    }
+
+    /**
+     * Remove a listener. If it showed the map, the map goes back to the view
+     * attached before it. With no listener left, the map and stores stay ready
+     * for the next attach until the idle timeout passes without one.
+     */
+    public void detach(Listener listener) {
+        boolean wasHost = getHost() == listener;
+        if (!listeners.remove(listener)) {
+            return;
+        }
+        if (wasHost && mapFragment != null) {
+            listener.onMapLost(mapFragment);
+            Listener host = getHost();
+            if (host != null) {
+                host.onMapReady(mapFragment);
+            }
+        }
+        if (listeners.isEmpty()) {
+            mapUsage.stop();
+            scheduleRelease();
+        }
+    }
+
+    private Listener getHost() {
+        return listeners.isEmpty() ? null : listeners.get(listeners.size() - 1);
+    }
+
+    private void scheduleRelease() {
+        mainHandler.removeCallbacks(idleRelease);
+        if (bound && idleTimeoutMs >= 0) {
+            mainHandler.postDelayed(idleRelease, idleTimeoutMs);
+        }
+    }
+
+    /**
+     * Whether a map view is showing the session. Main thread only.
+     */
+    public boolean hasListener() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Stop or allow positioning. The SDK has no scan toggle, so stopping
+     * unbinds it, also from the map views showing it, and keeps start from
+     * binding it again. Allowing it again binds the last started configuration.
+     * Main thread only.
+     *
+     * @return whether positioning is stopped when the call returns
+     */
+    public boolean setPositioningStopped(boolean stopped) {
+        positioningStopped = stopped;
+        if (!stopped) {
+            if (!bound && context != null) {
+                // Time a venue switch from here, not from the start made while stopped
+                switchStartTime = SystemClock.elapsedRealtime();
+                bind();
+            }
+            return false;
+        }
+        if (bound && !held) {
+            release();
+        }
+        return !bound;
+    }
+
+    /**
+     * The app went to the background or came back, from PoiAppLifecycle. Main thread only.
+     */
+    public void setInBackground(boolean inBackground) {
+        this.inBackground = inBackground;
+        if (inBackground) {
+            scheduleBackgroundRelease();
+            return;
+        }
+        mainHandler.removeCallbacks(backgroundRelease);
+        if (releasedInBackground) {
+            releasedInBackground = false;
+            if (!bound && context != null && !positioningStopped) {
+                bind();
+            }
+        }
+    }
+
+    private void scheduleBackgroundRelease() {
+        mainHandler.removeCallbacks(backgroundRelease);
+        if (inBackground && bound && !held && backgroundGraceMs >= 0) {
+            mainHandler.postDelayed(backgroundRelease, backgroundGraceMs);
+        }
+    }
+
+    /**
+     * Release the retained map right away if no map view is showing it, on memory pressure
+     */
+    public void releaseIfIdle() {
+        if (listeners.isEmpty() && bound && !held) {
+            memoryReleases++;
+            release();
+        }
+    }
+
+    /**
+     * Keep the session bound without a map view, ignoring the idle timeout and
+     * memory trims, while headless positioning runs
+     */
+    public void setHeld(final boolean held) {
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                PoiNavigationSession.this.held = held;
+                if (held) {
+                    mainHandler.removeCallbacks(idleRelease);
+                    mainHandler.removeCallbacks(backgroundRelease);
+                    return;
+                }
+                if (listeners.isEmpty()) {
+                    scheduleRelease();
+                }
+                scheduleBackgroundRelease();
+            }
+        });
+    }
+
+    /**
+     * Whether a configuration was started before, so resume can bind it again. Main thread only.
+     */
+    public boolean hasConfig() {
+        return context != null;
+    }
+
+    /**
+     * Bind the last started configuration again if it was released, unless positioning is stopped
+     */
+    public void resume() {
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                if (!bound && context != null && !positioningStopped) {
+                    bind();
+                }
+            }
+        });
+    }
+
+    /**
+     * Number of start calls so far. Main thread only.
+     */
+    public int getStartCount() {
+        return startCount;
+    }
+
+    /**
+     * Release a session bound for background work, such as a prefetch, unless
+     * a map view shows it, headless positioning holds it, or it was started
+     * again after the given start. Main thread only.
+     */
+    public void releaseIfUnclaimed(int startCount) {
+        if (this.startCount == startCount && listeners.isEmpty() && bound && !held) {
+            release();
+        }
+    }
+
+    public void setIdleTimeoutMs(final long idleTimeoutMs) {
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                PoiNavigationSession.this.idleTimeoutMs = idleTimeoutMs;
+            }
+        });
+    }
+
+    /**
+     * How long the app stays in the background before the SDK is released, -1 to keep it
+     */
+    public void setBackgroundGraceMs(final long backgroundGraceMs) {
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                PoiNavigationSession.this.backgroundGraceMs = backgroundGraceMs;
+                scheduleBackgroundRelease();
+            }
+        });
+    }
+
+    /**
+     * Unbind the SDK and drop the retained map
+     */
+    public void release() {
+        mainHandler.removeCallbacks(idleRelease);
+        mainHandler.removeCallbacks(backgroundRelease);
+        releasedInBackground = false;
+        boolean wasBound = bound;
+        if (bound) {
+            clearNavigation();
+        }
+        endSpans();
+        switching = false;
+        generation++;
+        bound = false;
+        mapFragment = null;
+        storesReady = false;
+        lastStatus = null;
+        notifyReady(new IllegalStateException("SDK session was released"));
+        if (wasBound) {
+            for (Listener listener : new ArrayList<Listener>(listeners)) {
+                listener.onReleased();
+            }
+        }
+    }
+
+    public void recordFirstFrame(boolean warm, long durationMs) {
+        if (warm) {
+            warmMounts++;
+            warmMountTotalMs += durationMs;
+            lastWarmMountMs = durationMs;
+        } else {
+            coldMounts++;
+            coldMountTotalMs += durationMs;
+            lastColdMountMs = durationMs;
+        }
+    }
+
+    public WritableMap getMountStats() {
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("warmMounts", warmMounts);
+        stats.putDouble("lastWarmMountMs", lastWarmMountMs);
+        stats.putDouble("averageWarmMountMs", warmMounts > 0 ? (double) warmMountTotalMs / warmMounts : 0);
+        stats.putInt("coldMounts", coldMounts);
+        stats.putDouble("lastColdMountMs", lastColdMountMs);
+        stats.putDouble("averageColdMountMs", coldMounts > 0 ? (double) coldMountTotalMs / coldMounts : 0);
+        stats.putInt("idleReleases", idleReleases);
+        stats.putInt("memoryReleases", memoryReleases);
+        stats.putInt("backgroundReleases", backgroundReleases);
+        return stats;
+    }
+
+    /**
+     * Call back once the stores of the bound venue are ready
+     */
+    public void whenReady(final ReadyCallback callback) {
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                if (storesReady) {
+                    callback.onReady();
+                } else if (!bound && positioningStopped && context != null) {
+                    callback.onError(new IllegalStateException("Positioning is stopped. Call startPositioning first."));
+                } else if (!bound) {
+                    callback.onError(new IllegalStateException("SDK not initialized. Call initNavigationSDK first."));
+                } else {
+                    readyCallbacks.add(callback);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stop waiting for the stores, for a caller that gave up. Main thread only.
+     */
+    public void removeReadyCallback(ReadyCallback callback) {
+        readyCallbacks.remove(callback);
+    }
+
+    private void bind() {
+        endSpans();
+        final int bindGeneration = ++generation;
+        bound = true;
+        mapFragment = null;
+        storesReady = false;
+
+        bindStartNanos = PoiMetrics.now();
+        mapSpanOpen = true;
+        storesSpanOpen = true;
+        Trace.beginAsyncSection("PoiNavigation.timeToMap", bindGeneration);
+        Trace.beginAsyncSection("PoiNavigation.timeToStoresReady", bindGeneration);
+
+        final Context bindContext = context;
+        final String bindApplicationId = applicationId;
+        final String bindApplicationSecret = applicationSecret;
+        final String bindUniqueId = uniqueId;
+        final String bindLanguage = language;
+        pendingSetups++;
+        SETUP_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                Trace.beginSection("PoiNavigation.prepare");
+                long prepareStart = PoiMetrics.now();
+                PoiNavigation navigation = null;
+                Exception error = null;
+                try {
+                    PoiSdkConfig poiSdkConfig = new PoiSdkConfig(
+                            bindApplicationId,
+                            bindApplicationSecret,
+                            bindUniqueId);
+                    navigation = PoiNavigation.getInstance(
+                            bindContext,
+                            bindLanguage,
+                            poiSdkConfig);
+                    // Load the saved store catalog here rather than on the first search
+                    PoiStoreCatalog.getInstance(bindContext, bindApplicationId, bindUniqueId).size();
+                } catch (Exception e) {
+                    error = e;
+                } finally {
+                    Trace.endSection();
+                }
+
+                long handOffStart = PoiMetrics.now();
+                PoiMetrics.getInstance().recordNanos(PoiMetrics.SETUP_PREPARE, handOffStart - prepareStart);
+                runSetupStep(bindGeneration, navigation, error, handOffStart);
+            }
+        });
+    }
+
+    /**
+     * Run the main thread step of a setup and wait for it, so the next setup
+     * cannot call getInstance while this one binds or clears the SDK
+     */
+    private void runSetupStep(final int bindGeneration, final PoiNavigation navigation, final Exception error,
+            final long handOffStart) {
+        final CountDownLatch stepDone = new CountDownLatch(1);
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pendingSetups--;
+                    if (bindGeneration != generation) {
+                        // Released or rebound while setting up, nothing else clears this instance.
+                        // A newer setup is still waiting for this step, so it cannot overlap.
+                        if (navigation != null) {
+                            clearResources(navigation);
+                        }
+                    } else if (error != null) {
+                        onBindFailed(error);
+                    } else {
+                        PoiMetrics.getInstance().recordSince(PoiMetrics.SETUP_HAND_OFF, handOffStart);
+                        attachNavigation(bindGeneration, navigation);
+                    }
+                } finally {
+                    stepDone.countDown();
+                }
+            }
+        });
+
+        try {
+            stepDone.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Clear the SDK on the main thread unless a setup is in flight, which
+     * then clears it itself once it sees that it is stale
+     */
+    private void clearNavigation() {
+        if (pendingSetups == 0) {
+            clearResources(PoiNavigation.getInstance());
+        }
+    }
+
+    private static void clearResources(PoiNavigation navigation) {
+        try {
+            navigation.clearResources();
+        } catch (Exception e) {
+            Log.e(TAG, "Exception in clearResources: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Main thread stage of the bind, only registers the callbacks
+     */
+    private void attachNavigation(final int bindGeneration, PoiNavigation navigation) {
+        Trace.beginSection("PoiNavigation.bind");
+        long bindStart = PoiMetrics.now();
+        try {
+            navigation.bind(new PoiNavigation.OnNavigationReady() {
+                @Override
+                public void onReady(final MapFragment fragment) {
+                    post(bindGeneration, new Runnable() {
+                        @Override
+                        public void run() {
+                            if (mapSpanOpen) {
+                                mapSpanOpen = false;
+                                PoiMetrics.getInstance().recordSince(PoiMetrics.TIME_TO_MAP, bindStartNanos);
+                                Trace.endAsyncSection("PoiNavigation.timeToMap", generation);
+                            }
+                            mapFragment = fragment;
+                            Listener host = getHost();
+                            if (host != null) {
+                                host.onMapReady(fragment);
+                            }
+                        }
+                    });
+                }
+
+                @Override
+                public void onStoresReady() {
+                    post(bindGeneration, new Runnable() {
+                        @Override
+                        public void run() {
+                            if (storesSpanOpen) {
+                                storesSpanOpen = false;
+                                PoiMetrics.getInstance().recordSince(PoiMetrics.TIME_TO_STORES, bindStartNanos);
+                                Trace.endAsyncSection("PoiNavigation.timeToStoresReady", generation);
+                            }
+                            storesReady = true;
+                            if (switching) {
+                                switching = false;
+                                venueCache.recordSwitch(SystemClock.elapsedRealtime() - switchStartTime);
+                            }
+                            refreshStoreCatalog();
+                            for (Listener listener : new ArrayList<Listener>(listeners)) {
+                                listener.onStoresReady();
+                            }
+                            notifyReady(null);
+                        }
+                    });
+                }
+
+                @Override
+                public void onError(final Throwable throwable) {
+                    post(bindGeneration, new Runnable() {
+                        @Override
+                        public void run() {
+                            PoiEventStream.getInstance().onError(throwable);
+                            for (Listener listener : new ArrayList<Listener>(listeners)) {
+                                listener.onError(throwable);
+                            }
+                            if (!storesReady) {
+                                notifyReady(throwable);
+                            }
+                        }
+                    });
+                }
+
+                @Override
+                public void onStatusChanged(final PLPStatus plpStatus) {
+                    post(bindGeneration, new Runnable() {
+                        @Override
+                        public void run() {
+                            lastStatus = String.valueOf(plpStatus);
+                            statusUpdates++;
+                            PoiEventStream.getInstance().onStatusChanged(plpStatus);
+                            for (Listener listener : new ArrayList<Listener>(listeners)) {
+                                listener.onStatusChanged(plpStatus);
+                            }
+                        }
+                    });
+                }
+            });
+        } catch (Exception e) {
+            onBindFailed(e);
+        } finally {
+            PoiMetrics.getInstance().recordSince(PoiMetrics.SETUP_BIND, bindStart);
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Fill the venue's catalog from the registered StoreSource, if any, and
+     * locate the proximity zones from it
+     */
+    private void refreshStoreCatalog() {
+        final PoiStoreCatalog.StoreSource source = PoiStoreCatalog.getStoreSource();
+        if (source == null) {
+            PoiProximityEngine.getInstance().rebuild(context);
+            return;
+        }
+
+        final Context catalogContext = context;
+        final String catalogApplicationId = applicationId;
+        final String catalogUniqueId = uniqueId;
+        final String catalogLanguage = language;
+        SETUP_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<PoiStoreCatalog.Store> stores = source.loadStores(catalogApplicationId, catalogUniqueId,
+                            catalogLanguage);
+                    if (stores != null) {
+                        PoiStoreCatalog.getInstance(catalogContext, catalogApplicationId, catalogUniqueId)
+                                .update(stores);
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Store source failed: " + e.getMessage(), e);
+                }
+                PoiProximityEngine.getInstance().rebuild(catalogContext);
+            }
+        });
+    }
+
+    /**
+     * Count the venue about to be bound in the cache, timing it if it differs from the last one
+     */
+    private void openVenue() {
+        String key = PoiVenueCache.key(applicationId, uniqueId, language);
+        venueCache.open(key);
+        switching = lastVenueKey != null && !lastVenueKey.equals(key);
+        switchStartTime = SystemClock.elapsedRealtime();
+        lastVenueKey = key;
+    }
+
+    private void onBindFailed(Exception e) {
+        Log.e(TAG, "Exception in bind: " + e.getMessage(), e);
+        bound = false;
+        switching = false;
+        endSpans();
+        notifyReady(e);
+        // Nothing more comes from this bind, the views drop what waits for it
+        for (Listener listener : new ArrayList<Listener>(listeners)) {
+            listener.onError(e);
+        }
+    }
+
+    /**
+     * Close the trace spans of a bind that did not finish, without recording it
+     */
+    private void endSpans() {
+        if (mapSpanOpen) {
+            mapSpanOpen = false;
+            Trace.endAsyncSection("PoiNavigation.timeToMap", generation);
+        }
+        if (storesSpanOpen) {
+            storesSpanOpen = false;
+            Trace.endAsyncSection("PoiNavigation.timeToStoresReady", generation);
+        }
+    }
+
+    private void notifyReady(Throwable error) {
+        List<ReadyCallback> callbacks = new ArrayList<ReadyCallback>(readyCallbacks);
+        readyCallbacks.clear();
+        for (ReadyCallback callback : callbacks) {
+            if (error == null) {
+                callback.onReady();
+            } else {
+                callback.onError(error);
+            }
+        }
+    }
+
+    /**
+     * Post an SDK callback to the main thread, dropping it if the SDK was rebound since
+     */
+    private void post(final int bindGeneration, final Runnable runnable) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (bindGeneration == generation) {
+                    runnable.run();
+                }
+            }
+        });
+    }
+
+    private void runOnMain(Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            mainHandler.post(runnable);
+        }
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,99 @@
+package __PACKAGE_NAME__;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+/**
+ * Position source that plays back recorded fixes with their original spacing,
+ * optionally sped up, and with their recorded timestamps. Used to exercise
+ * the position stream without a venue.
+ */
+public final class PoiPositionReplaySource implements PoiPositionStream.PositionSource {
+
+    public interface Listener {
+        void onFinished(int count, long durationMs);
+
+        void onStopped();
+    }
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] accuracies;
+    private final long[] timestamps;
+    private final String[] floors;
+    private final double speed;
+    private final Listener listener;
+
+    private HandlerThread thread;
+    private volatile boolean finished = false;
+
+    /**
+     * Fixes are maps with latitude, longitude and optional floor, accuracy and timestamp (ms)
+     */
+    public PoiPositionReplaySource(ReadableArray fixes, double speed, Listener listener) {
+        int size = fixes.size();
+        this.latitudes = new double[size];
+        this.longitudes = new double[size];
+        this.accuracies = new double[size];
+        this.timestamps = new long[size];
+        this.floors = new String[size];
+        this.speed = speed > 0 ? speed : 1;
+        this.listener = listener;
+
+        for (int i = 0; i < size; i++) {
+            ReadableMap fix = fixes.getMap(i);
+            latitudes[i] = fix.getDouble("latitude");
+            longitudes[i] = fix.getDouble("longitude");
+            accuracies[i] = fix.hasKey("accuracy") && !fix.isNull("accuracy") ? fix.getDouble("accuracy") : 0;
+            timestamps[i] = fix.hasKey("timestamp") && !fix.isNull("timestamp")
+                    ? (long) fix.getDouble("timestamp")
+                    : (i > 0 ? timestamps[i - 1] + 1000 : 0);
+            floors[i] = fix.hasKey("floor") && !fix.isNull("floor") ? fix.getString("floor") : null;
+        }
+    }
+
+    @Override
+    public synchronized void start(final PoiPositionStream stream) {
+        thread = new HandlerThread("PoiPositionReplay");
+        thread.start();
+        final Handler handler = new Handler(thread.getLooper());
+        final long startTime = SystemClock.uptimeMillis();
+
+        for (int i = 0; i < timestamps.length; i++) {
+            final int index = i;
+            long offset = (long) ((timestamps[i] - timestamps[0]) / speed);
+            handler.postAtTime(new Runnable() {
+                @Override
+                public void run() {
+                    stream.onPosition(latitudes[index], longitudes[index], floors[index], accuracies[index],
+                            timestamps[index]);
+                }
+            }, startTime + offset);
+        }
+
+        long end = timestamps.length > 0 ? (long) ((timestamps[timestamps.length - 1] - timestamps[0]) / speed) : 0;
+        handler.postAtTime(new Runnable() {
+            @Override
+            public void run() {
+                finished = true;
+                stream.removeSource(PoiPositionReplaySource.this);
+                listener.onFinished(timestamps.length, SystemClock.uptimeMillis() - startTime);
+            }
+        }, startTime + end);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.quit();
+            thread = null;
+        }
+        if (!finished) {
+            listener.onStopped();
+        }
+    }
+}
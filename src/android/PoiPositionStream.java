@@ -0,0 +1,403 @@
+package __PACKAGE_NAME__;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+/**
+ * Sends user positions to JS in batches.
+ *
+ * Positions are rate limited to maxRateHz by their own timestamps, so a
+ * replay is limited as it was recorded. A fix arriving sooner is held back as
+ * a trailing sample, the newest replacing the one held before, and is sent
+ * once the interval has passed unless a later fix was accepted in the
+ * meantime, so JS always ends up with the latest position. The interval is
+ * timed on the main thread from the fix timestamps, which a live source gives
+ * in milliseconds of real time. A fix older than the last accepted one starts
+ * over.
+ * In adaptive mode the interval grows to stationaryIntervalMs while the user
+ * moves less than stationaryMeters. Fixes are kept in preallocated arrays and
+ * emitted on the PoiPositionEvents channel as one flat array per batch
+ * interval, so an update costs no allocation until it is sent.
+ *
+ * Positions come from a PositionSource. The SDK's public API reports no
+ * positions, so the stream only carries fixes when the app registers its own
+ * source with setDefaultSource, or while a replay of recorded fixes runs in
+ * its place.
+ */
+public final class PoiPositionStream {
+
+    public static final String EVENT_NAME = "PoiPositionEvents";
+    public static final int CAPACITY = 64;
+    // latitude, longitude, accuracy, timestamp
+    public static final int STRIDE = 4;
+
+    public static final double DEFAULT_MAX_RATE_HZ = 5;
+    public static final long DEFAULT_BATCH_INTERVAL_MS = 250;
+    public static final double DEFAULT_STATIONARY_METERS = 1.0;
+    public static final long DEFAULT_STATIONARY_INTERVAL_MS = 2000;
+
+    private static final double EARTH_RADIUS_METERS = 6371000.0;
+
+    /**
+     * Where positions come from. The source calls onPosition on the stream while started.
+     */
+    public interface PositionSource {
+        void start(PoiPositionStream stream);
+
+        void stop();
+    }
+
+    private static final PoiPositionStream INSTANCE = new PoiPositionStream();
+
+    public static PoiPositionStream getInstance() {
+        return INSTANCE;
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile ReactApplicationContext reactContext;
+
+    // Guarded by this
+    private final double[] latitudes = new double[CAPACITY];
+    private final double[] longitudes = new double[CAPACITY];
+    private final double[] accuracies = new double[CAPACITY];
+    private final long[] timestamps = new long[CAPACITY];
+    private final String[] floors = new String[CAPACITY];
+    private int count = 0;
+
+    // Newest fix that came too soon after the last accepted one
+    private boolean hasTrailing = false;
+    private double trailingLatitude;
+    private double trailingLongitude;
+    private double trailingAccuracy;
+    private long trailingTimestamp;
+    private String trailingFloor;
+    private boolean trailingScheduled = false;
+
+    private boolean enabled = false;
+    private boolean flushScheduled = false;
+    private PositionSource source;
+    private PositionSource defaultSource;
+
+    private long minIntervalMs = (long) (1000 / DEFAULT_MAX_RATE_HZ);
+    private long batchIntervalMs = DEFAULT_BATCH_INTERVAL_MS;
+    private boolean adaptive = true;
+    private double stationaryMeters = DEFAULT_STATIONARY_METERS;
+    private long stationaryIntervalMs = DEFAULT_STATIONARY_INTERVAL_MS;
+
+    private boolean hasAccepted = false;
+    private long lastAcceptedTime = 0;
+    private double lastLatitude = Double.NaN;
+    private double lastLongitude = Double.NaN;
+    private String lastFloor;
+    private boolean stationary = false;
+
+    private long received = 0;
+    private long accepted = 0;
+    private long coalesced = 0;
+    private long emitted = 0;
+    private long dropped = 0;
+    private long batches = 0;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private final Runnable trailingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            acceptTrailing();
+        }
+    };
+
+    private PoiPositionStream() {
+    }
+
+    public void setReactContext(ReactApplicationContext reactContext) {
+        this.reactContext = reactContext;
+    }
+
+    public void clearReactContext(ReactApplicationContext reactContext) {
+        if (this.reactContext == reactContext) {
+            this.reactContext = null;
+        }
+    }
+
+    public synchronized void configure(double maxRateHz, long batchIntervalMs, boolean adaptive,
+            double stationaryMeters, long stationaryIntervalMs) {
+        this.minIntervalMs = maxRateHz > 0 ? (long) (1000 / maxRateHz) : 0;
+        this.batchIntervalMs = Math.max(0, batchIntervalMs);
+        this.adaptive = adaptive;
+        this.stationaryMeters = Math.max(0, stationaryMeters);
+        this.stationaryIntervalMs = Math.max(this.minIntervalMs, stationaryIntervalMs);
+    }
+
+    /**
+     * Start or stop sending positions, following whether JS has listeners
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            count = 0;
+            dropTrailing();
+        }
+    }
+
+    /**
+     * Register the app's own position source, used whenever no replay runs.
+     * Call it from the app, for example in Application.onCreate.
+     */
+    public void setDefaultSource(PositionSource source) {
+        boolean replace;
+        synchronized (this) {
+            replace = this.source == null || this.source == defaultSource;
+            defaultSource = source;
+        }
+        if (replace) {
+            setSource(source);
+        }
+    }
+
+    /**
+     * Replace the position source, stopping the previous one. Null goes back to the default source.
+     */
+    public void setSource(PositionSource source) {
+        PositionSource previous;
+        synchronized (this) {
+            if (source == null) {
+                source = defaultSource;
+            }
+            previous = this.source;
+            if (previous == source) {
+                return;
+            }
+            this.source = source;
+            hasAccepted = false;
+            dropTrailing();
+        }
+        if (previous != null) {
+            previous.stop();
+        }
+        if (source != null) {
+            source.start(this);
+        }
+    }
+
+    /**
+     * Stop the given source if it is the current one, going back to the default source
+     */
+    public void removeSource(PositionSource source) {
+        synchronized (this) {
+            if (this.source != source) {
+                return;
+            }
+        }
+        setSource(null);
+    }
+
+    /**
+     * Whether any source delivers positions, the app's own or a replay
+     */
+    public synchronized boolean hasSource() {
+        return source != null;
+    }
+
+    /**
+     * A position fix, from any thread. Floor may be null. Every fix is checked
+     * against the proximity zones, before rate limiting.
+     */
+    public void onPosition(double latitude, double longitude, String floor, double accuracy, long timestamp) {
+        PoiProximityEngine.getInstance().onPosition(latitude, longitude, floor, timestamp);
+        offer(latitude, longitude, floor, accuracy, timestamp);
+    }
+
+    private synchronized void offer(double latitude, double longitude, String floor, double accuracy,
+            long timestamp) {
+        received++;
+        if (!enabled) {
+            return;
+        }
+
+        if (hasAccepted && timestamp < lastAcceptedTime) {
+            // Time went back, such as a replay starting over
+            hasAccepted = false;
+            lastLatitude = Double.NaN;
+            dropTrailing();
+        }
+
+        boolean moved = Double.isNaN(lastLatitude)
+                || !equal(floor, lastFloor)
+                || distanceMeters(latitude, longitude, lastLatitude, lastLongitude) >= stationaryMeters;
+        stationary = adaptive && !moved;
+        long interval = stationary ? stationaryIntervalMs : minIntervalMs;
+
+        if (hasAccepted && timestamp - lastAcceptedTime < interval) {
+            // Too soon, held back until the interval has passed
+            if (hasTrailing) {
+                coalesced++;
+            }
+            hasTrailing = true;
+            trailingLatitude = latitude;
+            trailingLongitude = longitude;
+            trailingAccuracy = accuracy;
+            trailingTimestamp = timestamp;
+            trailingFloor = floor;
+            if (!trailingScheduled) {
+                trailingScheduled = true;
+                mainHandler.postDelayed(trailingRunnable, lastAcceptedTime + interval - timestamp);
+            }
+            return;
+        }
+
+        // This fix is newer than any held back
+        dropTrailing();
+        accept(latitude, longitude, floor, accuracy, timestamp);
+    }
+
+    /**
+     * Send the fix held back once its interval has passed
+     */
+    private synchronized void acceptTrailing() {
+        trailingScheduled = false;
+        if (!hasTrailing || !enabled) {
+            return;
+        }
+        hasTrailing = false;
+        accept(trailingLatitude, trailingLongitude, trailingFloor, trailingAccuracy, trailingTimestamp);
+        trailingFloor = null;
+    }
+
+    /**
+     * Forget the fix held back, counted as coalesced
+     */
+    private void dropTrailing() {
+        if (hasTrailing) {
+            hasTrailing = false;
+            trailingFloor = null;
+            coalesced++;
+        }
+        if (trailingScheduled) {
+            trailingScheduled = false;
+            mainHandler.removeCallbacks(trailingRunnable);
+        }
+    }
+
+    private void accept(double latitude, double longitude, String floor, double accuracy, long timestamp) {
+        if (count == CAPACITY) {
+            // Keep the newest fixes if the bridge falls behind
+            System.arraycopy(latitudes, 1, latitudes, 0, CAPACITY - 1);
+            System.arraycopy(longitudes, 1, longitudes, 0, CAPACITY - 1);
+            System.arraycopy(accuracies, 1, accuracies, 0, CAPACITY - 1);
+            System.arraycopy(timestamps, 1, timestamps, 0, CAPACITY - 1);
+            System.arraycopy(floors, 1, floors, 0, CAPACITY - 1);
+            count--;
+            dropped++;
+        }
+
+        store(count, latitude, longitude, floor, accuracy, timestamp);
+        count++;
+        accepted++;
+        hasAccepted = true;
+        lastAcceptedTime = timestamp;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        lastFloor = floor;
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            mainHandler.postDelayed(flushRunnable, batchIntervalMs);
+        }
+    }
+
+    public synchronized WritableMap getStats() {
+        WritableMap stats = Arguments.createMap();
+        stats.putDouble("received", received);
+        stats.putDouble("accepted", accepted);
+        stats.putDouble("coalesced", coalesced);
+        stats.putDouble("emitted", emitted);
+        stats.putDouble("dropped", dropped);
+        stats.putDouble("batches", batches);
+        stats.putBoolean("stationary", stationary);
+        stats.putBoolean("hasSource", source != null);
+        return stats;
+    }
+
+    public synchronized void resetStats() {
+        received = 0;
+        accepted = 0;
+        coalesced = 0;
+        emitted = 0;
+        dropped = 0;
+        batches = 0;
+    }
+
+    private void store(int index, double latitude, double longitude, String floor, double accuracy, long timestamp) {
+        latitudes[index] = latitude;
+        longitudes[index] = longitude;
+        accuracies[index] = accuracy;
+        timestamps[index] = timestamp;
+        floors[index] = floor;
+    }
+
+    private void flush() {
+        WritableArray values = Arguments.createArray();
+        WritableArray floorValues = Arguments.createArray();
+        int flushed;
+        synchronized (this) {
+            flushScheduled = false;
+            flushed = count;
+            for (int i = 0; i < count; i++) {
+                values.pushDouble(latitudes[i]);
+                values.pushDouble(longitudes[i]);
+                values.pushDouble(accuracies[i]);
+                values.pushDouble(timestamps[i]);
+                floorValues.pushString(floors[i]);
+                floors[i] = null;
+            }
+            count = 0;
+        }
+        if (flushed == 0) {
+            return;
+        }
+
+        ReactApplicationContext context = reactContext;
+        if (context == null || !context.hasActiveReactInstance()) {
+            synchronized (this) {
+                dropped += flushed;
+            }
+            return;
+        }
+
+        WritableMap batch = Arguments.createMap();
+        batch.putInt("count", flushed);
+        batch.putArray("values", values);
+        batch.putArray("floors", floorValues);
+        context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(EVENT_NAME, batch);
+        synchronized (this) {
+            emitted += flushed;
+            batches++;
+        }
+    }
+
+    /**
+     * Equirectangular distance, accurate enough within a venue
+     */
+    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double x = Math.toRadians(lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS_METERS;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
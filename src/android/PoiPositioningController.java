@@ -0,0 +1,69 @@
+package __PACKAGE_NAME__;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Decides whether positioning should run.
+ *
+ * Positioning runs while JS has it enabled (startPositioning/stopPositioning)
+ * and location permission is granted. Without permission the map stays
+ * browse-only. The SDK has no scan toggle, so stopping positioning unbinds
+ * the SDK session, map views included, until JS starts it again. In the
+ * background PoiAppLifecycle releases the session on its own.
+ */
+public final class PoiPositioningController {
+
+    public interface Callback {
+        /**
+         * @param stopped whether positioning is stopped once the change is applied
+         */
+        void onApplied(boolean stopped);
+    }
+
+    private static final PoiPositioningController INSTANCE = new PoiPositioningController();
+
+    public static PoiPositioningController getInstance() {
+        return INSTANCE;
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Written on the main thread, also read from synchronous JS calls
+    private volatile boolean permissionGranted = false;
+
+    private PoiPositioningController() {
+    }
+
+    /**
+     * Enable or disable positioning from JS, calling back once applied
+     */
+    public void setRequested(final boolean requested, final Callback callback) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                boolean stopped = PoiNavigationSession.getInstance().setPositioningStopped(!requested);
+                if (callback != null) {
+                    callback.onApplied(stopped);
+                }
+            }
+        });
+    }
+
+    /**
+     * Location permission result, only reported: the SDK map is shown the same either way
+     */
+    public void setPermissionGranted(boolean permissionGranted) {
+        this.permissionGranted = permissionGranted;
+    }
+
+    /**
+     * Checks the permission again, so it is known before any map view asked
+     * for it and follows changes made in the system settings
+     */
+    public boolean isBrowseOnly(Context context) {
+        permissionGranted = PoiPositioningService.hasLocationPermission(context);
+        return !permissionGranted;
+    }
+}
@@ -0,0 +1,211 @@
+package __PACKAGE_NAME__;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.Service;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Foreground service keeping positioning running without a mounted map view.
+ *
+ * It holds the SDK session bound with the last configuration started through
+ * initNavigationSDK or a map view, for as long as it runs. The SDK has no
+ * lighter way to pause scanning, so it is not duty cycled: rebinding would
+ * reload the venue each cycle. Whether the SDK keeps positioning with no
+ * MapFragment attached is up to the SDK, so the stats report the status
+ * updates it sent while headless. CPU and device awake time per hour are
+ * measured the same way as the session measures them while a map view is
+ * attached, so headless cost can be compared with the map screen on the
+ * same device.
+ *
+ * Declared in the manifest only when the config plugin is given
+ * headlessPositioning, and started only with location permission.
+ */
+public class PoiPositioningService extends Service {
+
+    private static final String TAG = "PoiPositioningService";
+    private static final String CHANNEL_ID = "poilabs_positioning";
+    private static final int NOTIFICATION_ID = 0x504f49;
+
+    private static final String EXTRA_TITLE = "title";
+    private static final String EXTRA_TEXT = "text";
+
+    // Only accessed on the main thread
+    private static boolean running = false;
+    private static boolean hasRun = false;
+    private static final PoiUsageMeter usage = new PoiUsageMeter();
+    private static int startStatusUpdates;
+    private static int stopStatusUpdates;
+    private static String lastError;
+
+    public static void start(Context context, String title, String text) {
+        Intent intent = new Intent(context, PoiPositioningService.class)
+                .putExtra(EXTRA_TITLE, title)
+                .putExtra(EXTRA_TEXT, text);
+        ContextCompat.startForegroundService(context, intent);
+    }
+
+    public static void stop(Context context) {
+        if (isDeclared(context)) {
+            context.stopService(new Intent(context, PoiPositioningService.class));
+        }
+    }
+
+    public static boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Whether the app's manifest declares the service, which the config plugin only does when asked to
+     */
+    public static boolean isDeclared(Context context) {
+        try {
+            context.getPackageManager().getServiceInfo(new ComponentName(context, PoiPositioningService.class), 0);
+            return true;
+        } catch (PackageManager.NameNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A location foreground service needs fine or coarse location granted
+     */
+    public static boolean hasLocationPermission(Context context) {
+        return ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED
+                || ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /**
+     * Uptime, awake and CPU time and SDK activity of the current or last run,
+     * and the same times over every period a map view was attached. Main thread only.
+     */
+    public static WritableMap getStats() {
+        PoiNavigationSession session = PoiNavigationSession.getInstance();
+        int statusUpdates = hasRun
+                ? (running ? session.getStatusUpdates() : stopStatusUpdates) - startStatusUpdates : 0;
+
+        WritableMap stats = Arguments.createMap();
+        stats.putBoolean("running", running);
+        usage.putStats(stats);
+        WritableMap map = Arguments.createMap();
+        session.putMapUsageStats(map);
+        stats.putMap("map", map);
+        stats.putBoolean("sdkBound", session.isBound());
+        stats.putInt("statusUpdates", statusUpdates);
+        stats.putString("lastStatus", session.getLastStatus());
+        stats.putBoolean("hasPositionSource", PoiPositionStream.getInstance().hasSource());
+        stats.putString("error", lastError);
+        return stats;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // Foreground first, a service started with startForegroundService must call it even to stop
+        if (!startForegroundWithNotification(intent)) {
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        if (!hasLocationPermission(this)) {
+            fail("Location permission not granted");
+            return START_NOT_STICKY;
+        }
+
+        PoiNavigationSession session = PoiNavigationSession.getInstance();
+        if (!session.hasConfig()) {
+            fail("SDK not initialized");
+            return START_NOT_STICKY;
+        }
+
+        if (!running) {
+            running = true;
+            hasRun = true;
+            lastError = null;
+            usage.reset();
+            usage.start();
+            startStatusUpdates = session.getStatusUpdates();
+        }
+        // Bound once and kept bound, the idle timeout and memory trims leave a held session alone
+        session.setHeld(true);
+        session.resume();
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        if (running) {
+            running = false;
+            usage.stop();
+            stopStatusUpdates = PoiNavigationSession.getInstance().getStatusUpdates();
+        }
+        // Falls back to the idle timeout rather than unbinding under a mounted map
+        PoiNavigationSession.getInstance().setHeld(false);
+        super.onDestroy();
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    private void fail(String message) {
+        Log.e(TAG, "Headless positioning stopped: " + message);
+        lastError = message;
+        stopSelf();
+    }
+
+    /**
+     * @return false if the system refused the foreground service, such as
+     * without location permission or when started from the background
+     */
+    private boolean startForegroundWithNotification(Intent intent) {
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && manager != null
+                && manager.getNotificationChannel(CHANNEL_ID) == null) {
+            manager.createNotificationChannel(new NotificationChannel(
+                    CHANNEL_ID, "Indoor positioning", NotificationManager.IMPORTANCE_LOW));
+        }
+
+        String title = intent != null ? intent.getStringExtra(EXTRA_TITLE) : null;
+        String text = intent != null ? intent.getStringExtra(EXTRA_TEXT) : null;
+        Notification notification = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_poilabs_positioning)
+                .setContentTitle(title != null ? title : "Indoor positioning")
+                .setContentText(text)
+                .setOngoing(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .build();
+
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION);
+            } else {
+                startForeground(NOTIFICATION_ID, notification);
+            }
+            return true;
+        } catch (SecurityException | IllegalStateException e) {
+            // IllegalStateException covers ForegroundServiceStartNotAllowedException on Android 12+
+            Log.e(TAG, "Failed to start the foreground service", e);
+            lastError = "Foreground service not allowed: " + e.getMessage();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package __PACKAGE_NAME__;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Checks user positions against registered circular zones and sends
+ * enter, exit and dwell events to JS.
+ *
+ * Zones are placed either at a store of the catalog or at a given point. They
+ * are indexed in a uniform grid per floor, with each zone listed in every
+ * cell its circle overlaps, so a position only checks the zones of its own
+ * cell plus the zones it is already inside. Store zones take their location
+ * from the catalog again when the venue's stores are ready or the catalog is
+ * replaced.
+ *
+ * Positions may come from any thread; access is synchronized. Events are
+ * emitted on the PoiProximityEvents channel, one array per batch, and timed
+ * by the timestamps of the fixes. The engine only sees the positions of
+ * PoiPositionStream, so it stays idle until that stream has a source.
+ */
+public final class PoiProximityEngine {
+
+    public static final String EVENT_NAME = "PoiProximityEvents";
+    public static final double DEFAULT_RADIUS_METERS = 10;
+    public static final double DEFAULT_CELL_SIZE_METERS = 25;
+    public static final double DEFAULT_EXIT_MARGIN_METERS = 2;
+    public static final long BATCH_INTERVAL_MS = 100;
+    public static final int MAX_PENDING_EVENTS = 256;
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * 6371000.0;
+    // Zones without a floor, checked on every floor
+    private static final String ANY_FLOOR = "";
+
+    private static final class Zone {
+        final String id;
+        final String storeId;
+        final double radius;
+        final long dwellMs;
+        double latitude;
+        double longitude;
+        String floor;
+        // Projected position in meters, valid while located
+        double x;
+        double y;
+        boolean located;
+
+        boolean inside;
+        boolean dwellSent;
+        long enteredAt;
+
+        Zone(String id, String storeId, double latitude, double longitude, String floor, double radius,
+                long dwellMs) {
+            this.id = id;
+            this.storeId = storeId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.floor = floor;
+            this.radius = radius;
+            this.dwellMs = dwellMs;
+            this.located = storeId == null && hasCoordinates(latitude, longitude);
+        }
+    }
+
+    private static final PoiProximityEngine INSTANCE = new PoiProximityEngine();
+
+    public static PoiProximityEngine getInstance() {
+        return INSTANCE;
+    }
+
+    private static final ExecutorService INDEX_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile ReactApplicationContext reactContext;
+
+    // Guarded by this
+    private final Map<String, Zone> zones = new HashMap<String, Zone>();
+    private final Map<String, Map<Long, List<Zone>>> grids = new HashMap<String, Map<Long, List<Zone>>>();
+    private final List<Zone> inside = new ArrayList<Zone>();
+    private double cellSize = DEFAULT_CELL_SIZE_METERS;
+    private double exitMargin = DEFAULT_EXIT_MARGIN_METERS;
+    // Projection reference, set from the first located zone
+    private double referenceLatitude = Double.NaN;
+    private double metersPerDegreeLongitude;
+
+    private final List<WritableMap> pendingEvents = new ArrayList<WritableMap>();
+    private boolean flushScheduled = false;
+
+    private long evaluations = 0;
+    private long candidatesChecked = 0;
+    private long evaluationTotalNanos = 0;
+    private long evaluationMaxNanos = 0;
+    private long emitted = 0;
+    private long dropped = 0;
+    private int unresolved = 0;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private PoiProximityEngine() {
+    }
+
+    public void setReactContext(ReactApplicationContext reactContext) {
+        this.reactContext = reactContext;
+    }
+
+    public void clearReactContext(ReactApplicationContext reactContext) {
+        if (this.reactContext == reactContext) {
+            this.reactContext = null;
+        }
+    }
+
+    public synchronized void configure(double cellSizeMeters, double exitMarginMeters) {
+        this.cellSize = cellSizeMeters > 0 ? cellSizeMeters : DEFAULT_CELL_SIZE_METERS;
+        this.exitMargin = Math.max(0, exitMarginMeters);
+        reindex();
+    }
+
+    /**
+     * Add or replace zones. Each zone has an id and either a storeId or a
+     * latitude/longitude with an optional floor, plus optional radius (meters)
+     * and dwellMs. Returns the number of zones registered.
+     */
+    public int addZones(ReadableArray entries, PoiStoreCatalog catalog) {
+        List<Zone> parsed = new ArrayList<Zone>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            ReadableMap entry = entries.getMap(i);
+            if (entry == null || !entry.hasKey("id") || entry.isNull("id")) {
+                continue;
+            }
+            String storeId = getString(entry, "storeId");
+            boolean hasPoint = entry.hasKey("latitude") && !entry.isNull("latitude")
+                    && entry.hasKey("longitude") && !entry.isNull("longitude");
+            if (storeId == null && !hasPoint) {
+                continue;
+            }
+            double radius = entry.hasKey("radius") && !entry.isNull("radius")
+                    ? entry.getDouble("radius") : DEFAULT_RADIUS_METERS;
+            long dwellMs = entry.hasKey("dwellMs") && !entry.isNull("dwellMs")
+                    ? (long) entry.getDouble("dwellMs") : 0;
+            parsed.add(new Zone(
+                    entry.getString("id"),
+                    storeId,
+                    hasPoint ? entry.getDouble("latitude") : 0,
+                    hasPoint ? entry.getDouble("longitude") : 0,
+                    getString(entry, "floor"),
+                    Math.max(0, radius),
+                    Math.max(0, dwellMs)));
+        }
+
+        // Resolve store locations before taking the lock, the catalog may load from disk.
+        // Without a venue yet, store zones are located by the rebuild once its stores are ready.
+        for (Zone zone : parsed) {
+            if (zone.storeId != null && catalog != null) {
+                locate(zone, catalog.findStore(zone.storeId));
+            }
+        }
+
+        synchronized (this) {
+            for (Zone zone : parsed) {
+                Zone previous = zones.put(zone.id, zone);
+                if (previous != null) {
+                    inside.remove(previous);
+                }
+            }
+            reindex();
+            return parsed.size();
+        }
+    }
+
+    public synchronized void removeZones(ReadableArray ids) {
+        for (int i = 0; i < ids.size(); i++) {
+            Zone zone = zones.remove(ids.getString(i));
+            if (zone != null) {
+                inside.remove(zone);
+            }
+        }
+        reindex();
+    }
+
+    public synchronized void clearZones() {
+        zones.clear();
+        inside.clear();
+        reindex();
+    }
+
+    /**
+     * Locate store zones again from the catalog, in the background, once the
+     * venue's stores are ready or the catalog changed
+     */
+    public void rebuild(Context context) {
+        final PoiStoreCatalog catalog = PoiStoreCatalog.getCurrent(context);
+        if (catalog == null) {
+            return;
+        }
+        INDEX_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Zone> storeZones = new ArrayList<Zone>();
+                synchronized (PoiProximityEngine.this) {
+                    if (zones.isEmpty()) {
+                        return;
+                    }
+                    for (Zone zone : zones.values()) {
+                        if (zone.storeId != null) {
+                            storeZones.add(zone);
+                        }
+                    }
+                }
+                if (storeZones.isEmpty()) {
+                    return;
+                }
+
+                List<PoiStoreCatalog.Store> stores = new ArrayList<PoiStoreCatalog.Store>(storeZones.size());
+                for (Zone zone : storeZones) {
+                    stores.add(catalog.findStore(zone.storeId));
+                }
+
+                synchronized (PoiProximityEngine.this) {
+                    for (int i = 0; i < storeZones.size(); i++) {
+                        Zone zone = storeZones.get(i);
+                        if (zones.get(zone.id) == zone) {
+                            locate(zone, stores.get(i));
+                        }
+                    }
+                    reindex();
+                }
+            }
+        });
+    }
+
+    /**
+     * A position fix, from any thread. Floor may be null, in which case zones on every floor are checked.
+     * The timestamp of the fix, in milliseconds, times dwell and stamps the events.
+     */
+    public synchronized void onPosition(double latitude, double longitude, String floor, long timestamp) {
+        if (zones.isEmpty() || Double.isNaN(referenceLatitude) || !hasCoordinates(latitude, longitude)) {
+            return;
+        }
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        long now = timestamp;
+        double x = longitude * metersPerDegreeLongitude;
+        double y = latitude * METERS_PER_DEGREE;
+
+        // Zones already entered: exit with a margin so a fix on the border does not flap, or dwell
+        for (int i = inside.size() - 1; i >= 0; i--) {
+            Zone zone = inside.get(i);
+            double exitRadius = zone.radius + exitMargin;
+            if (!zone.located || !onFloor(zone, floor) || distanceSquared(zone, x, y) > exitRadius * exitRadius) {
+                zone.inside = false;
+                inside.remove(i);
+                queue("exit", zone, now);
+            } else if (now < zone.enteredAt) {
+                // Time went back, such as a replay starting over
+                zone.enteredAt = now;
+            } else if (zone.dwellMs > 0 && !zone.dwellSent && now - zone.enteredAt >= zone.dwellMs) {
+                zone.dwellSent = true;
+                queue("dwell", zone, now);
+            }
+        }
+
+        long cell = cellKey(x, y);
+        if (floor != null) {
+            enter(grids.get(floor), cell, x, y, now);
+            enter(grids.get(ANY_FLOOR), cell, x, y, now);
+        } else {
+            for (Map<Long, List<Zone>> grid : grids.values()) {
+                enter(grid, cell, x, y, now);
+            }
+        }
+
+        long elapsed = SystemClock.elapsedRealtimeNanos() - startNanos;
+        evaluations++;
+        evaluationTotalNanos += elapsed;
+        evaluationMaxNanos = Math.max(evaluationMaxNanos, elapsed);
+        PoiMetrics.getInstance().recordNanos(PoiMetrics.PROXIMITY_EVALUATE, elapsed);
+    }
+
+    public synchronized WritableMap getStats() {
+        int cells = 0;
+        for (Map<Long, List<Zone>> grid : grids.values()) {
+            cells += grid.size();
+        }
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("zones", zones.size());
+        stats.putInt("unresolvedZones", unresolved);
+        stats.putInt("floors", grids.size());
+        stats.putInt("cells", cells);
+        stats.putInt("inside", inside.size());
+        stats.putDouble("evaluations", evaluations);
+        stats.putDouble("averageCandidates", evaluations > 0 ? (double) candidatesChecked / evaluations : 0);
+        stats.putDouble("averageEvaluationUs", evaluations > 0 ? evaluationTotalNanos / 1000.0 / evaluations : 0);
+        stats.putDouble("maxEvaluationUs", evaluationMaxNanos / 1000.0);
+        stats.putDouble("emitted", emitted);
+        stats.putDouble("dropped", dropped);
+        return stats;
+    }
+
+    public synchronized void resetStats() {
+        evaluations = 0;
+        candidatesChecked = 0;
+        evaluationTotalNanos = 0;
+        evaluationMaxNanos = 0;
+        emitted = 0;
+        dropped = 0;
+    }
+
+    private void enter(Map<Long, List<Zone>> grid, long cell, double x, double y, long now) {
+        if (grid == null) {
+            return;
+        }
+        List<Zone> candidates = grid.get(cell);
+        if (candidates == null) {
+            return;
+        }
+        candidatesChecked += candidates.size();
+        for (int i = 0; i < candidates.size(); i++) {
+            Zone zone = candidates.get(i);
+            if (!zone.inside && distanceSquared(zone, x, y) <= zone.radius * zone.radius) {
+                zone.inside = true;
+                zone.dwellSent = false;
+                zone.enteredAt = now;
+                inside.add(zone);
+                queue("enter", zone, now);
+            }
+        }
+    }
+
+    /**
+     * Stores without a location, or with 0/0 as a placeholder, leave the zone unresolved
+     */
+    private static void locate(Zone zone, PoiStoreCatalog.Store store) {
+        if (store == null || !hasCoordinates(store.latitude, store.longitude)) {
+            zone.located = false;
+            return;
+        }
+        zone.latitude = store.latitude;
+        zone.longitude = store.longitude;
+        zone.floor = store.floor;
+        zone.located = true;
+    }
+
+    /**
+     * Rebuild the grids from the zones. Caller holds the lock.
+     */
+    private void reindex() {
+        grids.clear();
+        unresolved = 0;
+        referenceLatitude = Double.NaN;
+
+        for (Zone zone : zones.values()) {
+            if (!zone.located) {
+                unresolved++;
+                continue;
+            }
+            if (Double.isNaN(referenceLatitude)) {
+                referenceLatitude = zone.latitude;
+                metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(referenceLatitude));
+            }
+            zone.x = zone.longitude * metersPerDegreeLongitude;
+            zone.y = zone.latitude * METERS_PER_DEGREE;
+
+            String floorKey = zone.floor != null ? zone.floor : ANY_FLOOR;
+            Map<Long, List<Zone>> grid = grids.get(floorKey);
+            if (grid == null) {
+                grid = new HashMap<Long, List<Zone>>();
+                grids.put(floorKey, grid);
+            }
+
+            long minX = (long) Math.floor((zone.x - zone.radius) / cellSize);
+            long maxX = (long) Math.floor((zone.x + zone.radius) / cellSize);
+            long minY = (long) Math.floor((zone.y - zone.radius) / cellSize);
+            long maxY = (long) Math.floor((zone.y + zone.radius) / cellSize);
+            for (long cx = minX; cx <= maxX; cx++) {
+                for (long cy = minY; cy <= maxY; cy++) {
+                    Long key = (cx << 32) | (cy & 0xffffffffL);
+                    List<Zone> cell = grid.get(key);
+                    if (cell == null) {
+                        cell = new ArrayList<Zone>(4);
+                        grid.put(key, cell);
+                    }
+                    cell.add(zone);
+                }
+            }
+        }
+    }
+
+    private static boolean hasCoordinates(double latitude, double longitude) {
+        return !Double.isNaN(latitude) && !Double.isNaN(longitude) && !(latitude == 0 && longitude == 0);
+    }
+
+    private long cellKey(double x, double y) {
+        long cx = (long) Math.floor(x / cellSize);
+        long cy = (long) Math.floor(y / cellSize);
+        return (cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private static double distanceSquared(Zone zone, double x, double y) {
+        double dx = zone.x - x;
+        double dy = zone.y - y;
+        return dx * dx + dy * dy;
+    }
+
+    private static boolean onFloor(Zone zone, String floor) {
+        return zone.floor == null || floor == null || zone.floor.equals(floor);
+    }
+
+    private void queue(String type, Zone zone, long now) {
+        if (pendingEvents.size() >= MAX_PENDING_EVENTS) {
+            dropped++;
+            return;
+        }
+        WritableMap event = Arguments.createMap();
+        event.putString("type", type);
+        event.putString("zoneId", zone.id);
+        if (zone.storeId != null) {
+            event.putString("storeId", zone.storeId);
+        } else {
+            event.putNull("storeId");
+        }
+        event.putDouble("timestamp", now);
+        if ("dwell".equals(type)) {
+            event.putDouble("dwellMs", now - zone.enteredAt);
+        }
+        pendingEvents.add(event);
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            mainHandler.postDelayed(flushRunnable, BATCH_INTERVAL_MS);
+        }
+    }
+
+    private void flush() {
+        WritableArray events = Arguments.createArray();
+        int count;
+        synchronized (this) {
+            flushScheduled = false;
+            count = pendingEvents.size();
+            for (WritableMap event : pendingEvents) {
+                events.pushMap(event);
+            }
+            pendingEvents.clear();
+        }
+        if (count == 0) {
+            return;
+        }
+
+        ReactApplicationContext context = reactContext;
+        if (context == null || !context.hasActiveReactInstance()) {
+            synchronized (this) {
+                dropped += count;
+            }
+            return;
+        }
+
+        context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(EVENT_NAME, events);
+        synchronized (this) {
+            emitted += count;
+        }
+    }
+
+    private static String getString(ReadableMap map, String key) {
+        return map.hasKey(key) && !map.isNull(key) ? map.getString(key) : null;
+    }
+}
@@ -0,0 +1,145 @@
+package __PACKAGE_NAME__;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.facebook.react.bridge.Promise;
+
+/**
+ * Schedules route requests to the map.
+ *
+ * Requests arriving within the debounce window collapse into the last one,
+ * and a newer request replaces an older one that has not been shown yet.
+ * Promises resolve once navigateToStore has run on the map, and reject with
+ * ROUTE_REPLACED, ROUTE_TIMEOUT, or ROUTE_ERROR when the map failed to load.
+ * A rejected request cancels its command, so a map that receives it later
+ * does not draw the route.
+ */
+public final class PoiRouteScheduler {
+
+    public static final long DEFAULT_DEBOUNCE_MS = 150;
+    public static final long DEFAULT_TIMEOUT_MS = 30000;
+
+    private static final PoiRouteScheduler INSTANCE = new PoiRouteScheduler();
+
+    public static PoiRouteScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    private final class Request implements Runnable {
+        final String storeId;
+        final int viewTag;
+        final Promise promise;
+        boolean finished = false;
+        // Set once dispatched to the map views
+        PoiMapCommand command;
+
+        final Runnable timeout = new Runnable() {
+            @Override
+            public void run() {
+                finish(Request.this, "ROUTE_TIMEOUT", "Route to " + storeId + " was not shown in time");
+            }
+        };
+
+        Request(String storeId, int viewTag, Promise promise) {
+            this.storeId = storeId;
+            this.viewTag = viewTag;
+            this.promise = promise;
+        }
+
+        // Called on the main thread once the map has run navigateToStore
+        @Override
+        public void run() {
+            finish(this, null, null);
+        }
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile long debounceMs = DEFAULT_DEBOUNCE_MS;
+    private volatile long timeoutMs = DEFAULT_TIMEOUT_MS;
+
+    // Only accessed on the main thread
+    private Request current;
+
+    private final Runnable dispatch = new Runnable() {
+        @Override
+        public void run() {
+            Request request = current;
+            if (request != null && !request.finished) {
+                request.command = PoiMapCommand.navigateTo(request.storeId, request);
+                PoiMapCommandBus.getInstance().send(request.viewTag, request.command);
+            }
+        }
+    };
+
+    private PoiRouteScheduler() {
+    }
+
+    public void setDebounceMs(long debounceMs) {
+        this.debounceMs = Math.max(0, debounceMs);
+    }
+
+    public void setTimeoutMs(long timeoutMs) {
+        this.timeoutMs = Math.max(0, timeoutMs);
+    }
+
+    /**
+     * Request a route, replacing any request that has not been shown yet. The promise may be null.
+     */
+    public void request(final String storeId, final int viewTag, final Promise promise) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (current != null) {
+                    finish(current, "ROUTE_REPLACED", "Route to " + current.storeId + " was replaced by a newer request");
+                }
+
+                Request request = new Request(storeId, viewTag, promise);
+                current = request;
+                mainHandler.removeCallbacks(dispatch);
+                mainHandler.postDelayed(dispatch, debounceMs);
+                mainHandler.postDelayed(request.timeout, timeoutMs);
+            }
+        });
+    }
+
+    /**
+     * Reject the request for the given view, or for every view, as its map failed to load
+     */
+    public void fail(final int viewTag, final String errorMessage) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Request request = current;
+                if (request != null
+                        && (request.viewTag == viewTag || request.viewTag == PoiMapCommandBus.ALL_VIEWS)) {
+                    finish(request, "ROUTE_ERROR", errorMessage);
+                }
+            }
+        });
+    }
+
+    private void finish(Request request, String errorCode, String errorMessage) {
+        if (request.finished) {
+            return;
+        }
+        request.finished = true;
+        mainHandler.removeCallbacks(request.timeout);
+        if (current == request) {
+            current = null;
+        }
+        if (errorCode != null && request.command != null) {
+            request.command.cancel();
+        }
+
+        if (request.promise == null) {
+            return;
+        }
+        if (errorCode == null) {
+            request.promise.resolve(null);
+        } else {
+            request.promise.reject(errorCode, errorMessage);
+        }
+    }
+}
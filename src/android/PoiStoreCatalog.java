@@ -0,0 +1,479 @@
+package __PACKAGE_NAME__;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Venue store catalog with a token prefix index for name search.
+ *
+ * There is one catalog per venue, keyed by applicationId and uniqueId, kept
+ * in memory and saved to its own file in the app's files directory, so it is
+ * available on the next cold start before the SDK is ready. The SDK's public
+ * API has no store list, so a catalog is filled from JS with setStoreCatalog
+ * or from native code through a registered StoreSource, which is asked for
+ * the stores each time the SDK reports them ready. Access is synchronized;
+ * callers run on the native modules thread.
+ */
+public final class PoiStoreCatalog {
+
+    private static final String TAG = "PoiStoreCatalog";
+    private static final String FILE_PREFIX = "poilabs_store_catalog_";
+    // Single catalog shared by every venue, written by earlier versions
+    private static final String LEGACY_FILE_NAME = "poilabs_store_catalog.json";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static final class Store {
+        public final String id;
+        public final String name;
+        public final String category;
+        public final String floor;
+        public final double latitude;
+        public final double longitude;
+
+        public Store(String id, String name, String category, String floor, double latitude, double longitude) {
+            this.id = id;
+            this.name = name;
+            this.category = category;
+            this.floor = floor;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
+    /**
+     * Provides the stores of a venue from native code, called off the main thread once the SDK has loaded them
+     */
+    public interface StoreSource {
+        List<Store> loadStores(String applicationId, String uniqueId, String language) throws Exception;
+    }
+
+    private static final Map<String, PoiStoreCatalog> INSTANCES = new HashMap<String, PoiStoreCatalog>();
+    private static String currentApplicationId;
+    private static String currentUniqueId;
+    private static StoreSource storeSource;
+    private static boolean legacyFileChecked = false;
+
+    public static synchronized PoiStoreCatalog getInstance(Context context, String applicationId, String uniqueId) {
+        if (!legacyFileChecked) {
+            legacyFileChecked = true;
+            new File(context.getFilesDir(), LEGACY_FILE_NAME).delete();
+        }
+        String key = key(applicationId, uniqueId);
+        PoiStoreCatalog catalog = INSTANCES.get(key);
+        if (catalog == null) {
+            catalog = new PoiStoreCatalog(context.getApplicationContext(), key);
+            INSTANCES.put(key, catalog);
+        }
+        return catalog;
+    }
+
+    /**
+     * The catalog of the venue last started, or null before one was
+     */
+    public static synchronized PoiStoreCatalog getCurrent(Context context) {
+        if (currentApplicationId == null || currentUniqueId == null) {
+            return null;
+        }
+        return getInstance(context, currentApplicationId, currentUniqueId);
+    }
+
+    public static synchronized void setCurrentVenue(String applicationId, String uniqueId) {
+        currentApplicationId = applicationId;
+        currentUniqueId = uniqueId;
+    }
+
+    public static synchronized void setStoreSource(StoreSource source) {
+        storeSource = source;
+    }
+
+    public static synchronized StoreSource getStoreSource() {
+        return storeSource;
+    }
+
+    /**
+     * Drop the in-memory stores of every catalog that can be reloaded from disk
+     */
+    public static void trimAll() {
+        List<PoiStoreCatalog> catalogs;
+        synchronized (PoiStoreCatalog.class) {
+            catalogs = new ArrayList<PoiStoreCatalog>(INSTANCES.values());
+        }
+        for (PoiStoreCatalog catalog : catalogs) {
+            catalog.trimMemory();
+        }
+    }
+
+    static String key(String applicationId, String uniqueId) {
+        return applicationId + "/" + uniqueId;
+    }
+
+    private final File file;
+    private boolean loaded = false;
+    // Whether the stores in memory are also on disk, so they can be dropped and reloaded
+    private boolean saved = false;
+
+    private List<Store> stores = new ArrayList<Store>();
+    private Map<String, Store> storesById = new HashMap<String, Store>();
+
+    // Sorted normalized tokens and, at the same position, the store they belong to
+    private String[] tokens = new String[0];
+    private int[] tokenStores = new int[0];
+
+    private PoiStoreCatalog(Context context, String key) {
+        this.file = new File(context.getFilesDir(), FILE_PREFIX + fileSafe(key) + ".json");
+    }
+
+    /**
+     * URL-encode the key, which keeps different keys apart and leaves only file name safe characters
+     */
+    private static String fileSafe(String key) {
+        try {
+            return URLEncoder.encode(key, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return String.valueOf(key.hashCode());
+        }
+    }
+
+    /**
+     * Replace the catalog and save it to disk
+     */
+    public synchronized int update(ReadableArray entries) {
+        List<Store> parsed = new ArrayList<Store>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            ReadableMap entry = entries.getMap(i);
+            if (entry == null || !entry.hasKey("id") || entry.isNull("id")) {
+                continue;
+            }
+            parsed.add(new Store(
+                    getString(entry, "id"),
+                    getString(entry, "name"),
+                    getString(entry, "category"),
+                    getString(entry, "floor"),
+                    getDouble(entry, "latitude"),
+                    getDouble(entry, "longitude")));
+        }
+        return update(parsed);
+    }
+
+    /**
+     * Replace the catalog with stores from a StoreSource and save it to disk
+     */
+    public synchronized int update(List<Store> newStores) {
+        List<Store> parsed = new ArrayList<Store>(newStores.size());
+        for (Store store : newStores) {
+            if (store != null && store.id != null) {
+                parsed.add(store);
+            }
+        }
+
+        setStores(parsed);
+        loaded = true;
+        saved = save();
+        return stores.size();
+    }
+
+    public synchronized WritableMap getStore(String id) {
+        ensureLoaded();
+        Store store = storesById.get(id);
+        return store != null ? toMap(store) : null;
+    }
+
+    /**
+     * The store with the given id, or null
+     */
+    public synchronized Store findStore(String id) {
+        ensureLoaded();
+        return storesById.get(id);
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return stores.size();
+    }
+
+    /**
+     * Stores whose name tokens start with every token of the query, names starting with the query first
+     */
+    public synchronized WritableArray search(String query, int limit) {
+        ensureLoaded();
+        WritableArray results = Arguments.createArray();
+        String[] queryTokens = tokenize(query);
+        if (queryTokens.length == 0 || limit <= 0) {
+            return results;
+        }
+
+        BitSet candidates = new BitSet(stores.size());
+        String first = queryTokens[0];
+        for (int i = lowerBound(first); i < tokens.length && tokens[i].startsWith(first); i++) {
+            candidates.set(tokenStores[i]);
+        }
+
+        String normalizedQuery = normalize(query).trim();
+        List<Store> prefixMatches = new ArrayList<Store>();
+        List<Store> otherMatches = new ArrayList<Store>();
+        for (int index = candidates.nextSetBit(0); index >= 0; index = candidates.nextSetBit(index + 1)) {
+            Store store = stores.get(index);
+            if (!matchesAll(store, queryTokens)) {
+                continue;
+            }
+            if (normalize(store.name).startsWith(normalizedQuery)) {
+                prefixMatches.add(store);
+            } else {
+                otherMatches.add(store);
+            }
+        }
+
+        for (int i = 0; i < prefixMatches.size() && results.size() < limit; i++) {
+            results.pushMap(toMap(prefixMatches.get(i)));
+        }
+        for (int i = 0; i < otherMatches.size() && results.size() < limit; i++) {
+            results.pushMap(toMap(otherMatches.get(i)));
+        }
+        return results;
+    }
+
+    /**
+     * Drop the in-memory stores and index if they can be reloaded from disk
+     */
+    public synchronized void trimMemory() {
+        if (!loaded || !saved) {
+            return;
+        }
+        setStores(new ArrayList<Store>());
+        loaded = false;
+    }
+
+    private boolean matchesAll(Store store, String[] queryTokens) {
+        if (queryTokens.length == 1) {
+            return true;
+        }
+        String[] storeTokens = tokenize(store.name);
+        for (int q = 1; q < queryTokens.length; q++) {
+            boolean found = false;
+            for (String storeToken : storeTokens) {
+                if (storeToken.startsWith(queryTokens[q])) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = tokens.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tokens[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void setStores(List<Store> newStores) {
+        Map<String, Store> byId = new HashMap<String, Store>(newStores.size() * 2);
+        final List<String> tokenList = new ArrayList<String>();
+        List<Integer> ownerList = new ArrayList<Integer>();
+        for (int i = 0; i < newStores.size(); i++) {
+            Store store = newStores.get(i);
+            byId.put(store.id, store);
+            for (String token : tokenize(store.name)) {
+                tokenList.add(token);
+                ownerList.add(i);
+            }
+        }
+
+        Integer[] order = new Integer[tokenList.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return tokenList.get(a).compareTo(tokenList.get(b));
+            }
+        });
+
+        String[] sortedTokens = new String[order.length];
+        int[] sortedOwners = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedTokens[i] = tokenList.get(order[i]);
+            sortedOwners[i] = ownerList.get(order[i]);
+        }
+
+        stores = newStores;
+        storesById = byId;
+        tokens = sortedTokens;
+        tokenStores = sortedOwners;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+
+        try {
+            JSONArray array = new JSONArray(readFile());
+            List<Store> parsed = new ArrayList<Store>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject object = array.getJSONObject(i);
+                parsed.add(new Store(
+                        object.getString("id"),
+                        object.optString("name", null),
+                        object.optString("category", null),
+                        object.optString("floor", null),
+                        object.optDouble("latitude", Double.NaN),
+                        object.optDouble("longitude", Double.NaN)));
+            }
+            setStores(parsed);
+            saved = true;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to load store catalog: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean save() {
+        try {
+            JSONArray array = new JSONArray();
+            for (Store store : stores) {
+                JSONObject object = new JSONObject();
+                object.put("id", store.id);
+                object.put("name", store.name);
+                object.put("category", store.category);
+                object.put("floor", store.floor);
+                if (!Double.isNaN(store.latitude) && !Double.isNaN(store.longitude)) {
+                    object.put("latitude", store.latitude);
+                    object.put("longitude", store.longitude);
+                }
+                array.put(object);
+            }
+
+            File temp = new File(file.getPath() + ".tmp");
+            OutputStream output = new FileOutputStream(temp);
+            try {
+                output.write(array.toString().getBytes(UTF_8));
+            } finally {
+                output.close();
+            }
+            if (!temp.renameTo(file)) {
+                Log.w(TAG, "Failed to replace store catalog file");
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to save store catalog: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private String readFile() throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < bytes.length) {
+                int read = input.read(bytes, offset, bytes.length - offset);
+                if (read < 0) {
+                    break;
+                }
+                offset += read;
+            }
+            return new String(bytes, 0, offset, UTF_8);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static WritableMap toMap(Store store) {
+        WritableMap map = Arguments.createMap();
+        map.putString("id", store.id);
+        map.putString("name", store.name);
+        map.putString("category", store.category);
+        map.putString("floor", store.floor);
+        if (!Double.isNaN(store.latitude) && !Double.isNaN(store.longitude)) {
+            map.putDouble("latitude", store.latitude);
+            map.putDouble("longitude", store.longitude);
+        }
+        return map;
+    }
+
+    /**
+     * Lower-case, strip diacritics and split on anything that is not a letter or digit
+     */
+    static String[] tokenize(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            return new String[0];
+        }
+        List<String> result = new ArrayList<String>();
+        for (String token : normalized.split("[^\\p{L}\\p{Nd}]+")) {
+            if (!token.isEmpty()) {
+                result.add(token);
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}+", "").replace('ı', 'i');
+    }
+
+    private static String getString(ReadableMap map, String key) {
+        if (!map.hasKey(key) || map.isNull(key)) {
+            return null;
+        }
+        if (map.getType(key) == ReadableType.Number) {
+            double value = map.getDouble(key);
+            return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+        }
+        return map.getString(key);
+    }
+
+    private static double getDouble(ReadableMap map, String key) {
+        return map.hasKey(key) && !map.isNull(key) ? map.getDouble(key) : Double.NaN;
+    }
+}
@@ -0,0 +1,83 @@
+package __PACKAGE_NAME__;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Adds up time, device awake time and process CPU time over the periods it runs.
+ *
+ * Awake time is uptimeMillis, which stops while the device sleeps, so it
+ * counts every wake of the device, not only those the SDK caused. CPU time
+ * is the whole process, JS included. Both are meant for comparing one mode
+ * with another on the same device, not as absolute costs. Main thread only.
+ */
+public final class PoiUsageMeter {
+
+    private boolean running = false;
+    private long startElapsed;
+    private long startAwake;
+    private long startCpu;
+    private long elapsedMs = 0;
+    private long awakeMs = 0;
+    private long cpuMs = 0;
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        startElapsed = SystemClock.elapsedRealtime();
+        startAwake = SystemClock.uptimeMillis();
+        startCpu = Process.getElapsedCpuTime();
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        elapsedMs += SystemClock.elapsedRealtime() - startElapsed;
+        awakeMs += SystemClock.uptimeMillis() - startAwake;
+        cpuMs += Process.getElapsedCpuTime() - startCpu;
+    }
+
+    /**
+     * Forget the periods so far, a running meter starts over from now
+     */
+    public void reset() {
+        boolean wasRunning = running;
+        running = false;
+        elapsedMs = 0;
+        awakeMs = 0;
+        cpuMs = 0;
+        if (wasRunning) {
+            start();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Put uptimeMs, awakeMs and cpuMs, and the last two per hour of uptime
+     */
+    public void putStats(WritableMap stats) {
+        long elapsed = elapsedMs;
+        long awake = awakeMs;
+        long cpu = cpuMs;
+        if (running) {
+            elapsed += SystemClock.elapsedRealtime() - startElapsed;
+            awake += SystemClock.uptimeMillis() - startAwake;
+            cpu += Process.getElapsedCpuTime() - startCpu;
+        }
+        double hours = elapsed / 3600000.0;
+        stats.putDouble("uptimeMs", elapsed);
+        stats.putDouble("awakeMs", awake);
+        stats.putDouble("awakeMsPerHour", hours > 0 ? awake / hours : 0);
+        stats.putDouble("cpuMs", cpu);
+        stats.putDouble("cpuMsPerHour", hours > 0 ? cpu / hours : 0);
+    }
+}
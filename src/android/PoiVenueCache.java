@@ -0,0 +1,148 @@
+package __PACKAGE_NAME__;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recently used venues, least recently used first out.
+ *
+ * The SDK holds a single venue at a time, so switching always rebinds it and
+ * the venue data itself comes from the SDK's disk cache. What is kept here is
+ * the plugin's state of each venue, the highlighted stores and the route, so
+ * switching back to a venue can show them again, along with switch times.
+ * A hit is a map mounted without commands of its own that got its venue's
+ * state back, a miss one that found none. A venue found here loads no faster
+ * than one that is not, so hits say how often state was restored, not how
+ * often loading was saved. Only accessed on the main thread.
+ */
+public final class PoiVenueCache {
+
+    public static final int DEFAULT_MAX_VENUES = 4;
+
+    public static final class Entry {
+        public final String key;
+        public List<String> highlightedStoreIds;
+        public String routeStoreId;
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        public boolean hasState() {
+            return (highlightedStoreIds != null && !highlightedStoreIds.isEmpty())
+                    || (routeStoreId != null && !routeStoreId.isEmpty());
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private int maxVenues = DEFAULT_MAX_VENUES;
+
+    private int evictions = 0;
+    private int hits = 0;
+    private int misses = 0;
+    private int switches = 0;
+    private long switchTotalMs = 0;
+    private long lastSwitchMs = 0;
+
+    public static String key(String applicationId, String uniqueId, String language) {
+        return applicationId + "_" + uniqueId + "_" + (language != null ? language : "en");
+    }
+
+    public void setMaxVenues(int maxVenues) {
+        this.maxVenues = Math.max(1, maxVenues);
+        trim();
+    }
+
+    /**
+     * Add a venue that is being bound, or mark it most recently used
+     */
+    public void open(String key) {
+        if (entries.get(key) != null) {
+            return;
+        }
+        entries.put(key, new Entry(key));
+        trim();
+    }
+
+    /**
+     * State of a cached venue without changing its position, or null
+     */
+    public Entry peek(String key) {
+        for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+            if (candidate.getKey().equals(key)) {
+                return candidate.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * State to restore for a map of the venue, or null, counted as a hit or a miss
+     */
+    public Entry lookup(String key) {
+        Entry entry = peek(key);
+        if (entry == null || !entry.hasState()) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry;
+    }
+
+    public void saveState(String key, List<String> highlightedStoreIds, String routeStoreId) {
+        Entry entry = peek(key);
+        if (entry == null) {
+            return;
+        }
+        entry.highlightedStoreIds = highlightedStoreIds != null ? new ArrayList<String>(highlightedStoreIds) : null;
+        entry.routeStoreId = routeStoreId;
+    }
+
+    public void recordSwitch(long durationMs) {
+        switches++;
+        switchTotalMs += durationMs;
+        lastSwitchMs = durationMs;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public void resetStats() {
+        evictions = 0;
+        hits = 0;
+        misses = 0;
+        switches = 0;
+        switchTotalMs = 0;
+        lastSwitchMs = 0;
+    }
+
+    public WritableMap getStats() {
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("venues", entries.size());
+        stats.putInt("maxVenues", maxVenues);
+        stats.putInt("evictions", evictions);
+        stats.putInt("hits", hits);
+        stats.putInt("misses", misses);
+        stats.putDouble("hitRate", hits + misses > 0 ? (double) hits / (hits + misses) : 0);
+        stats.putInt("switches", switches);
+        stats.putDouble("lastSwitchMs", lastSwitchMs);
+        stats.putDouble("averageSwitchMs", switches > 0 ? (double) switchTotalMs / switches : 0);
+        return stats;
+    }
+
+    private void trim() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxVenues && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions++;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package __PACKAGE_NAME__;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.StatFs;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Downloads venue data ahead of the first map mount.
+ *
+ * The SDK has no download-only API, so the worker binds it through
+ * PoiNavigationSession without a map view and waits for the stores. That
+ * fills the SDK's own disk cache, which a map mounted later loads from. A
+ * session the worker bound itself is released when it finishes, unless a
+ * map view or another start has claimed it since. The worker never takes
+ * over a session bound to another venue. The application secret is kept in
+ * PoiCredentialStore and the work request only carries its key.
+ */
+public class PoiVenuePrefetchWorker extends Worker {
+
+    private static final String TAG = "PoiVenuePrefetchWorker";
+    private static final String PREFS_NAME = "poilabs_venue_prefetch";
+    private static final String WORK_PREFIX = "poilabs_prefetch_";
+    private static final String WORK_TAG = "poilabs_prefetch";
+    // Runs, first one included, before a failing prefetch is given up
+    private static final int MAX_ATTEMPTS = 5;
+
+    public static final long DEFAULT_MAX_AGE_MS = 24 * 60 * 60 * 1000L;
+    public static final long DEFAULT_MIN_FREE_BYTES = 50 * 1024 * 1024L;
+    public static final long DEFAULT_TIMEOUT_MS = 2 * 60 * 1000L;
+
+    private static final String KEY_APPLICATION_ID = "applicationId";
+    private static final String KEY_CREDENTIAL = "credential";
+    private static final String KEY_UNIQUE_ID = "uniqueId";
+    private static final String KEY_LANGUAGE = "language";
+    private static final String KEY_MAX_AGE_MS = "maxAgeMs";
+    private static final String KEY_MIN_FREE_BYTES = "minFreeBytes";
+    private static final String KEY_TIMEOUT_MS = "timeoutMs";
+
+    /**
+     * Schedule a prefetch unless the venue was fetched within maxAgeMs or one is already queued.
+     * Returns false if the data is still fresh.
+     */
+    public static boolean schedule(Context context, String applicationId, String applicationSecret, String uniqueId,
+            String language, long maxAgeMs, long minFreeBytes, long timeoutMs, boolean unmeteredOnly) {
+        String venueKey = venueKey(applicationId, uniqueId, language);
+        if (isFresh(context, venueKey, maxAgeMs)) {
+            return false;
+        }
+
+        String credential = PoiCredentialStore.put(context, applicationId, uniqueId, applicationSecret);
+        if (credential == null) {
+            throw new IllegalStateException("Could not store the application secret for the prefetch");
+        }
+
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(unmeteredOnly ? NetworkType.UNMETERED : NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .setRequiresStorageNotLow(true)
+                .build();
+
+        Data input = new Data.Builder()
+                .putString(KEY_APPLICATION_ID, applicationId)
+                .putString(KEY_CREDENTIAL, credential)
+                .putString(KEY_UNIQUE_ID, uniqueId)
+                .putString(KEY_LANGUAGE, language)
+                .putLong(KEY_MAX_AGE_MS, maxAgeMs)
+                .putLong(KEY_MIN_FREE_BYTES, minFreeBytes)
+                .putLong(KEY_TIMEOUT_MS, timeoutMs)
+                .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(PoiVenuePrefetchWorker.class)
+                .setConstraints(constraints)
+                .setInputData(input)
+                .addTag(WORK_TAG)
+                .build();
+
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(WORK_PREFIX + venueKey, ExistingWorkPolicy.KEEP, request);
+        return true;
+    }
+
+    /**
+     * Cancel the prefetches still queued, drop the secrets kept for them and
+     * forget when venues were fetched, so the next prefetch runs again
+     */
+    public static void clearState(Context context) {
+        WorkManager.getInstance(context).cancelAllWorkByTag(WORK_TAG);
+        PoiCredentialStore.clear(context);
+        prefs(context).edit().clear().apply();
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public PoiVenuePrefetchWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Data input = getInputData();
+        final String applicationId = input.getString(KEY_APPLICATION_ID);
+        final String uniqueId = input.getString(KEY_UNIQUE_ID);
+        final String language = input.getString(KEY_LANGUAGE);
+        String credential = input.getString(KEY_CREDENTIAL);
+        final String applicationSecret = credential != null
+                ? PoiCredentialStore.get(getApplicationContext(), credential) : null;
+        if (applicationId == null || applicationSecret == null || uniqueId == null) {
+            return Result.failure();
+        }
+
+        String venueKey = venueKey(applicationId, uniqueId, language);
+        if (isFresh(getApplicationContext(), venueKey, input.getLong(KEY_MAX_AGE_MS, DEFAULT_MAX_AGE_MS))) {
+            return Result.success();
+        }
+
+        long minFreeBytes = input.getLong(KEY_MIN_FREE_BYTES, DEFAULT_MIN_FREE_BYTES);
+        if (new StatFs(getApplicationContext().getFilesDir().getPath()).getAvailableBytes() < minFreeBytes) {
+            Log.w(TAG, "Skipping venue prefetch, less than " + minFreeBytes + " bytes free");
+            return Result.success();
+        }
+
+        Fetch fetch = new Fetch(getApplicationContext(), applicationId, applicationSecret, uniqueId, language);
+        mainHandler.post(fetch);
+
+        try {
+            if (!fetch.done.await(input.getLong(KEY_TIMEOUT_MS, DEFAULT_TIMEOUT_MS), TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Venue prefetch timed out");
+                mainHandler.post(fetch.cancel);
+                return retryOrFail();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mainHandler.post(fetch.cancel);
+            return retryOrFail();
+        }
+
+        Throwable throwable = fetch.error.get();
+        if (throwable instanceof AnotherVenueException) {
+            // Not retried: the app is using another venue, the next prefetch call schedules this one again
+            Log.w(TAG, "Venue prefetch skipped: " + throwable.getMessage());
+            return Result.failure();
+        }
+        if (throwable != null) {
+            Log.w(TAG, "Venue prefetch failed: " + throwable.getMessage());
+            return retryOrFail();
+        }
+
+        prefs(getApplicationContext()).edit().putLong(venueKey, System.currentTimeMillis()).apply();
+        return Result.success();
+    }
+
+    private Result retryOrFail() {
+        if (getRunAttemptCount() + 1 >= MAX_ATTEMPTS) {
+            Log.w(TAG, "Venue prefetch given up after " + MAX_ATTEMPTS + " attempts");
+            return Result.failure();
+        }
+        return Result.retry();
+    }
+
+    /**
+     * The SDK is or became bound to another venue, which the prefetch never takes over
+     */
+    private static final class AnotherVenueException extends IllegalStateException {
+        AnotherVenueException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Binds the session for the venue and waits for the stores on the main
+     * thread, releasing what it bound when done or cancelled
+     */
+    private static final class Fetch implements Runnable, PoiNavigationSession.ReadyCallback {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        private final Context context;
+        private final String applicationId;
+        private final String applicationSecret;
+        private final String uniqueId;
+        private final String language;
+
+        // Main thread only
+        private final PoiNavigationSession session = PoiNavigationSession.getInstance();
+        private boolean started = false;
+        private boolean finished = false;
+        private boolean wasBound;
+        private int startCount;
+
+        final Runnable cancel = new Runnable() {
+            @Override
+            public void run() {
+                if (!started || finished) {
+                    finished = true;
+                    return;
+                }
+                session.removeReadyCallback(Fetch.this);
+                finish(new IllegalStateException("Venue prefetch cancelled"));
+            }
+        };
+
+        Fetch(Context context, String applicationId, String applicationSecret, String uniqueId, String language) {
+            this.context = context;
+            this.applicationId = applicationId;
+            this.applicationSecret = applicationSecret;
+            this.uniqueId = uniqueId;
+            this.language = language;
+        }
+
+        @Override
+        public void run() {
+            if (finished) {
+                // Cancelled before the main thread got to it
+                return;
+            }
+            if (session.isBound() && !session.matches(applicationId, applicationSecret, uniqueId, language)) {
+                finished = true;
+                error.set(new AnotherVenueException("SDK is bound to another venue"));
+                done.countDown();
+                return;
+            }
+
+            started = true;
+            wasBound = session.isBound();
+            session.start(context, applicationId, applicationSecret, uniqueId, language);
+            startCount = session.getStartCount();
+            session.whenReady(this);
+        }
+
+        @Override
+        public void onReady() {
+            finish(null);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // Another start took the session over while the venue loaded
+            finish(session.getStartCount() != startCount
+                    ? new AnotherVenueException(throwable.getMessage()) : throwable);
+        }
+
+        private void finish(Throwable throwable) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (!wasBound) {
+                session.releaseIfUnclaimed(startCount);
+            }
+            error.set(throwable);
+            done.countDown();
+        }
+    }
+
+    private static boolean isFresh(Context context, String venueKey, long maxAgeMs) {
+        long fetchedAt = prefs(context).getLong(venueKey, 0);
+        return fetchedAt > 0 && System.currentTimeMillis() - fetchedAt < maxAgeMs;
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static String venueKey(String applicationId, String uniqueId, String language) {
+        return applicationId + "_" + uniqueId + "_" + (language != null ? language : "en");
+    }
+}
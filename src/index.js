@@ -1,11 +1,12 @@
-import React, { useRef, useEffect } from "react";
+import React, { useRef, useImperativeHandle } from "react";
 import {
+  DeviceEventEmitter,
   Platform,
-  UIManager,
   findNodeHandle,
-  requireNativeComponent,
   NativeModules,
+  requireNativeComponent,
 } from "react-native";
+import NativePoiMapModule from "./NativePoiMapModule";
 
 const LINKING_ERROR =
   `The package '@poilabs-dev/navigation-sdk-plugin' doesn't seem to be linked. Make sure: \n\n` +
@@ -13,7 +14,11 @@ const LINKING_ERROR =
   "- You rebuilt the app after installing the package\n" +
   "- You are not using Expo managed workflow\n";
 
-const PoiMapModule = NativeModules.PoiMapModule
+// Through the New Architecture interop layer, legacy bridge module otherwise.
+// NativePoiMapModule only types the module, no codegen spec is generated.
+const PoiMapModule = NativePoiMapModule
+  ? NativePoiMapModule
+  : NativeModules.PoiMapModule
   ? NativeModules.PoiMapModule
   : new Proxy(
       {},
@@ -26,30 +31,42 @@ const PoiMapModule = NativeModules.PoiMapModule
 
 const PoiMapViewManager = requireNativeComponent("PoiMapViewManager");
 
+const ALL_VIEWS = -1;
+
 const PoiMapView = React.forwardRef((props, ref) => {
   const nativeRef = useRef(null);
 
-  useEffect(() => {
-    const viewId = findNodeHandle(nativeRef.current);
-    createFragment(viewId);
-  }, []);
-
-  const createFragment = (viewId) => {
-    UIManager.dispatchViewManagerCommand(
-      viewId,
-      UIManager.getViewManagerConfig(
-        "PoiMapViewManager"
-      ).Commands.create.toString(),
-      [viewId]
-    );
-  };
+  // Commands sent through the ref only reach this map view
+  useImperativeHandle(ref, () => {
+    const viewTag = () => findNodeHandle(nativeRef.current) ?? ALL_VIEWS;
+    return {
+      showPointOnMap: (storeIds) => showPointOnMap(storeIds, viewTag()),
+      updateHighlights: (delta) => updateHighlights(delta, viewTag()),
+      showSinglePointOnMap: (storeId) =>
+        showSinglePointOnMap(storeId, viewTag()),
+      getRouteTo: (storeId) => getRouteTo(storeId, viewTag()),
+      getRouteToWithPromise: (storeId) =>
+        getRouteToWithPromise(storeId, viewTag()),
+    };
+  });
 
+  // The map fragment is created natively once the view is attached, laid out
+  // and has its credentials, so there is no create command to send here
   return <PoiMapViewManager {...props} ref={nativeRef} />;
 });
 
 PoiMapView.displayName = "PoiMapView";
 
 export function initNavigationSDK(config) {
+  if (Platform.OS === "android") {
+    return PoiMapModule.initNavigationSDK(
+      config.applicationId,
+      config.applicationSecret,
+      config.uniqueId,
+      config.language || "en"
+    );
+  }
+
   return PoiMapModule.initNavigationSDK(
     config.applicationId,
     config.applicationSecret,
@@ -57,28 +74,66 @@ export function initNavigationSDK(config) {
   );
 }
 
+export function prefetchVenue(config, options = {}) {
+  if (Platform.OS !== "android") {
+    return Promise.resolve(false);
+  }
+  return PoiMapModule.prefetchVenue(
+    config.applicationId,
+    config.applicationSecret,
+    config.uniqueId,
+    config.language || "en",
+    options.maxAgeMs != null ? options.maxAgeMs : 24 * 60 * 60 * 1000,
+    options.minFreeBytes != null ? options.minFreeBytes : 50 * 1024 * 1024,
+    !!options.unmeteredOnly
+  );
+}
+
+export function clearPrefetchState() {
+  if (Platform.OS === "android") {
+    PoiMapModule.clearPrefetchState();
+  }
+}
+
 export function getReadyForStoreMap() {
   return PoiMapModule.getReadyForStoreMap();
 }
 
-export function showPointOnMap(storeIds) {
+export function showPointOnMap(storeIds, viewTag = ALL_VIEWS) {
   const idsArray = Array.isArray(storeIds) ? storeIds : [storeIds];
-  return PoiMapModule.showPointOnMap(idsArray);
+  return PoiMapModule.showPointOnMap(idsArray, viewTag);
+}
+
+export function updateHighlights(
+  { replace = null, add = null, remove = null } = {},
+  viewTag = ALL_VIEWS
+) {
+  return PoiMapModule.updateHighlights(replace, add, remove, viewTag);
 }
 
-export function showSinglePointOnMap(storeId) {
-  return PoiMapModule.showSinglePointOnMap(storeId);
+export function showSinglePointOnMap(storeId, viewTag = ALL_VIEWS) {
+  return PoiMapModule.showSinglePointOnMap(storeId, viewTag);
 }
 
-export function getRouteTo(storeId) {
-  PoiMapModule.getRouteTo(storeId);
+export function getRouteTo(storeId, viewTag = ALL_VIEWS) {
+  PoiMapModule.getRouteTo(storeId, viewTag);
 }
 
-export function getRouteToWithPromise(storeId) {
-  return PoiMapModule.getRouteToWithPromise(storeId);
+export function getRouteToWithPromise(storeId, viewTag = ALL_VIEWS) {
+  return PoiMapModule.getRouteToWithPromise(storeId, viewTag);
 }
 
-export function startPositioning() {
+export function configureRouteRequests(options = {}) {
+  PoiMapModule.configureRouteRequests(
+    options.debounceMs != null ? options.debounceMs : 150,
+    options.timeoutMs != null ? options.timeoutMs : 30000
+  );
+}
+
+export function startPositioning(options = null) {
+  if (Platform.OS === "android") {
+    return PoiMapModule.startPositioning(options);
+  }
   return PoiMapModule.startPositioning();
 }
 
@@ -86,8 +141,221 @@ export function stopPositioning() {
   return PoiMapModule.stopPositioning();
 }
 
-export function restartMap(language = "en") {
-  PoiMapModule.restartMap(language);
+export function getHeadlessPositioningStats() {
+  return Platform.OS === "android"
+    ? PoiMapModule.getHeadlessPositioningStats()
+    : Promise.resolve(null);
+}
+
+export function restartMap(language = "en", options = {}) {
+  return PoiMapModule.restartMap(language, options.mode || "full");
+}
+
+export function setMapIdleTimeout(timeoutMs) {
+  PoiMapModule.setMapIdleTimeout(timeoutMs);
+}
+
+export function setBackgroundGracePeriod(gracePeriodMs) {
+  PoiMapModule.setBackgroundGracePeriod(gracePeriodMs);
+}
+
+export function getMapMountStats() {
+  return PoiMapModule.getMapMountStats();
+}
+
+export function configureVenueCache(options = {}) {
+  PoiMapModule.configureVenueCache(
+    options.maxVenues != null ? options.maxVenues : 4,
+    options.restoreState !== false
+  );
+}
+
+export function getVenueCacheStats() {
+  return PoiMapModule.getVenueCacheStats();
+}
+
+const NAVIGATION_EVENTS = "PoiNavigationEvents";
+
+function addNavigationEventListener(type, listener) {
+  return DeviceEventEmitter.addListener(NAVIGATION_EVENTS, (events) => {
+    events.forEach((event) => {
+      if (event.type === type) {
+        listener(event);
+      }
+    });
+  });
+}
+
+export function addStatusListener(listener) {
+  return addNavigationEventListener("status", listener);
+}
+
+export function addErrorListener(listener) {
+  return addNavigationEventListener("error", listener);
+}
+
+const POSITION_EVENTS = "PoiPositionEvents";
+// latitude, longitude, accuracy, timestamp per fix
+const POSITION_STRIDE = 4;
+let positionListenerCount = 0;
+let positionSourceWarned = false;
+
+export function addPositionListener(listener) {
+  if (
+    Platform.OS === "android" &&
+    !positionSourceWarned &&
+    !PoiMapModule.hasPositionSource()
+  ) {
+    positionSourceWarned = true;
+    console.warn(
+      "PoiPositionStream has no position source, listeners only receive replayed positions until the app registers one"
+    );
+  }
+
+  const subscription = DeviceEventEmitter.addListener(
+    POSITION_EVENTS,
+    ({ count, values, floors }) => {
+      const positions = new Array(count);
+      for (let i = 0; i < count; i++) {
+        const offset = i * POSITION_STRIDE;
+        positions[i] = {
+          latitude: values[offset],
+          longitude: values[offset + 1],
+          accuracy: values[offset + 2],
+          timestamp: values[offset + 3],
+          floor: floors[i],
+        };
+      }
+      listener(positions);
+    }
+  );
+
+  if (positionListenerCount++ === 0) {
+    PoiMapModule.setPositionStreamEnabled(true);
+  }
+
+  let removed = false;
+  return {
+    remove() {
+      if (removed) {
+        return;
+      }
+      removed = true;
+      subscription.remove();
+      if (--positionListenerCount === 0) {
+        PoiMapModule.setPositionStreamEnabled(false);
+      }
+    },
+  };
+}
+
+export function configurePositionStream(options = {}) {
+  PoiMapModule.configurePositionStream(
+    options.maxRateHz != null ? options.maxRateHz : 5,
+    options.batchIntervalMs != null ? options.batchIntervalMs : 250,
+    options.adaptive !== false,
+    options.stationaryMeters != null ? options.stationaryMeters : 1,
+    options.stationaryIntervalMs != null ? options.stationaryIntervalMs : 2000
+  );
+}
+
+export function getPositionStreamStats() {
+  return PoiMapModule.getPositionStreamStats();
+}
+
+export function resetPositionStreamStats() {
+  PoiMapModule.resetPositionStreamStats();
+}
+
+export function replayPositions(fixes, options = {}) {
+  return PoiMapModule.replayPositions(fixes, options.speed || 1);
+}
+
+export function stopPositionReplay() {
+  PoiMapModule.stopPositionReplay();
+}
+
+const PROXIMITY_EVENTS = "PoiProximityEvents";
+
+export function addProximityZones(zones) {
+  return PoiMapModule.addProximityZones(zones);
+}
+
+export function removeProximityZones(zoneIds) {
+  PoiMapModule.removeProximityZones(zoneIds);
+}
+
+export function clearProximityZones() {
+  PoiMapModule.clearProximityZones();
+}
+
+export function configureProximity(options = {}) {
+  PoiMapModule.configureProximity(
+    options.cellSizeMeters != null ? options.cellSizeMeters : 25,
+    options.exitMarginMeters != null ? options.exitMarginMeters : 2
+  );
+}
+
+export function addProximityListener(listener) {
+  return DeviceEventEmitter.addListener(PROXIMITY_EVENTS, (events) => {
+    events.forEach(listener);
+  });
+}
+
+export function getProximityStats() {
+  return PoiMapModule.getProximityStats();
+}
+
+export function resetProximityStats() {
+  PoiMapModule.resetProximityStats();
+}
+
+export function setStatusCoalescingWindow(windowMs) {
+  PoiMapModule.setStatusCoalescingWindow(windowMs);
+}
+
+export function getEventStats() {
+  return PoiMapModule.getEventStats();
+}
+
+export function resetEventStats() {
+  PoiMapModule.resetEventStats();
+}
+
+export function getMetrics() {
+  return PoiMapModule.getMetrics();
+}
+
+export function resetMetrics() {
+  PoiMapModule.resetMetrics();
+}
+
+export function setStoreCatalog(stores) {
+  return PoiMapModule.setStoreCatalog(stores);
+}
+
+export function searchStores(query, limit = 20) {
+  return PoiMapModule.searchStores(query, limit);
+}
+
+export function getStore(storeId) {
+  return PoiMapModule.getStore(storeId);
+}
+
+export function isStoresReady() {
+  return PoiMapModule.isStoresReady();
+}
+
+export function getPositioningStatus() {
+  return PoiMapModule.getPositioningStatus();
+}
+
+export function isBrowseOnly() {
+  return Platform.OS === "android" ? PoiMapModule.isBrowseOnly() : false;
+}
+
+export function hasPositionSource() {
+  return Platform.OS === "android" ? PoiMapModule.hasPositionSource() : false;
 }
 
 export function askRuntimePermissionsIfNeeded() {
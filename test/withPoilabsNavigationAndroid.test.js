@@ -0,0 +1,169 @@
+const { test, beforeEach, afterEach } = require("node:test");
+const assert = require("node:assert");
+const fs = require("fs");
+const os = require("os");
+const path = require("path");
+const Module = require("module");
+
+// @expo/config-plugins is provided by the app, so the mods are recorded
+// here and run in order against a temporary project instead
+const CONFIG_PLUGINS = "@expo/config-plugins";
+const configPlugins = {
+  withDangerousMod(config, [platform, action]) {
+    config.mods.push({ platform, action });
+    return config;
+  },
+  withAndroidManifest(config, action) {
+    config.mods.push({ platform: "android", manifest: true, action });
+    return config;
+  },
+};
+const originalLoad = Module._load;
+Module._load = function (request, ...rest) {
+  if (request === CONFIG_PLUGINS) {
+    return configPlugins;
+  }
+  return originalLoad.call(this, request, ...rest);
+};
+
+const withPoilabsNavigationAndroid = require("../plugin/withPoilabsNavigationAndroid");
+
+const PACKAGE_NAME = "com.example.app";
+const SERVICE_NAME = `${PACKAGE_NAME}.PoiPositioningService`;
+const SECTION_BEGIN = "# @poilabs-dev/navigation-sdk-plugin begin";
+
+let projectRoot;
+let manifest;
+
+beforeEach(() => {
+  projectRoot = fs.mkdtempSync(path.join(os.tmpdir(), "poilabs-plugin-"));
+  const appDir = path.join(projectRoot, "android/app");
+  fs.mkdirSync(path.join(appDir, "src/main/java/com/example/app"), {
+    recursive: true,
+  });
+  fs.writeFileSync(
+    path.join(projectRoot, "android/build.gradle"),
+    "allprojects {\n    repositories {\n        google()\n    }\n}\n"
+  );
+  fs.writeFileSync(
+    path.join(appDir, "build.gradle"),
+    "android {\n    compileSdkVersion 33\n    defaultConfig {\n        minSdkVersion 21\n        targetSdkVersion 33\n    }\n}\n\ndependencies {\n}\n"
+  );
+  fs.writeFileSync(path.join(appDir, "proguard-rules.pro"), "-keep class com.example.Kept\n");
+  fs.writeFileSync(path.join(projectRoot, "android/gradle.properties"), "");
+  manifest = { manifest: { application: [{ $: {} }] } };
+});
+
+afterEach(() => {
+  fs.rmSync(projectRoot, { recursive: true, force: true });
+});
+
+async function runPlugin(props) {
+  const config = withPoilabsNavigationAndroid(
+    { slug: "app", android: { package: PACKAGE_NAME }, mods: [] },
+    props
+  );
+  for (const mod of config.mods) {
+    if (mod.manifest) {
+      await mod.action({ modResults: manifest });
+    } else {
+      await mod.action({ modRequest: { projectRoot } });
+    }
+  }
+}
+
+function read(relativePath) {
+  return fs.readFileSync(path.join(projectRoot, relativePath), "utf8");
+}
+
+function exists(relativePath) {
+  return fs.existsSync(path.join(projectRoot, relativePath));
+}
+
+function countOf(text, part) {
+  return text.split(part).length - 1;
+}
+
+test("copies the templates with the app package", async () => {
+  await runPlugin();
+
+  const module = read("android/app/src/main/java/com/example/app/PoiMapModule.java");
+  assert.match(module, /^package com\.example\.app;/);
+  assert.ok(!module.includes("__PACKAGE_NAME__"));
+  assert.ok(exists("android/app/src/main/res/layout/fragment_poi_map.xml"));
+  assert.ok(exists("android/app/src/main/res/drawable/ic_poilabs_positioning.xml"));
+});
+
+test("sets the SDK versions and dependencies once", async () => {
+  await runPlugin();
+  await runPlugin();
+
+  const gradle = read("android/app/build.gradle");
+  assert.match(gradle, /compileSdkVersion 34/);
+  assert.match(gradle, /minSdkVersion 24/);
+  assert.equal(countOf(gradle, "com.github.poiteam:Android-Navigation-SDK:4.4.1"), 1);
+  assert.ok(!gradle.includes("profileinstaller"));
+});
+
+test("keep rules are on by default and replaced, not appended, on every run", async () => {
+  await runPlugin();
+  await runPlugin();
+
+  const rules = read("android/app/proguard-rules.pro");
+  assert.ok(rules.startsWith("-keep class com.example.Kept\n"));
+  assert.equal(countOf(rules, SECTION_BEGIN), 1);
+  assert.ok(rules.includes(`-keep public class ${PACKAGE_NAME}.PoiMapFragment { public <init>(); }`));
+
+  await runPlugin({ proguardRules: false });
+  assert.equal(read("android/app/proguard-rules.pro").trim(), "-keep class com.example.Kept");
+});
+
+test("baseline profile is opt-in and removed when turned off", async () => {
+  await runPlugin();
+  assert.ok(!exists("android/app/src/main/baseline-prof.txt"));
+
+  await runPlugin({ baselineProfile: true });
+  const profile = read("android/app/src/main/baseline-prof.txt");
+  assert.ok(profile.includes("HSPLcom/example/app/PoiMapFragment;->**(**)**"));
+  assert.match(read("android/app/build.gradle"), /androidx\.profileinstaller:profileinstaller/);
+
+  await runPlugin({ baselineProfile: false });
+  assert.ok(!exists("android/app/src/main/baseline-prof.txt"));
+});
+
+test("headless service and its permissions are opt-in", async () => {
+  const permissions = () =>
+    manifest.manifest["uses-permission"].map((p) => p.$["android:name"]);
+  const services = () =>
+    manifest.manifest.application[0].service.filter(
+      (s) => s.$["android:name"] === SERVICE_NAME
+    );
+
+  await runPlugin();
+  assert.ok(permissions().includes("android.permission.ACCESS_FINE_LOCATION"));
+  assert.ok(!permissions().includes("android.permission.FOREGROUND_SERVICE_LOCATION"));
+  assert.equal(services().length, 0);
+
+  await runPlugin({ headlessPositioning: true });
+  await runPlugin({ headlessPositioning: true });
+  assert.ok(permissions().includes("android.permission.FOREGROUND_SERVICE_LOCATION"));
+  assert.equal(services().length, 1);
+  assert.equal(services()[0].$["android:foregroundServiceType"], "location");
+
+  await runPlugin({ headlessPositioning: false });
+  assert.equal(services().length, 0);
+});
+
+test("skips gradle changes when the android project is missing", async () => {
+  fs.rmSync(path.join(projectRoot, "android/build.gradle"));
+  fs.rmSync(path.join(projectRoot, "android/app/build.gradle"));
+  const warn = console.warn;
+  const warnings = [];
+  console.warn = (message) => warnings.push(message);
+  try {
+    await runPlugin();
+  } finally {
+    console.warn = warn;
+  }
+  assert.equal(warnings.length, 2);
+});